@@ -0,0 +1,124 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.StringTokenizer;
+
+/**
+ * Copies of the parsing code of the plugin before the byte level import,
+ * so that the benchmarks can compare the current code against it. The
+ * methods behave like the former ones, except that errors are returned as
+ * sentinels instead of aborting the import.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+final class ColumbusCSVBaseline {
+    private static final String SEPS = ",";
+    private static final String[] EMPTY_LINE = new String[] {};
+    /* Lines to read before deciding on Columbus file yes/no */
+    private static final int MAX_SCAN_LINES = 20;
+    private static final int MIN_SCAN_LINES = 10;
+
+    private ColumbusCSVBaseline() {
+    }
+
+    /**
+     * Splits a line into its trimmed fields like the former
+     * <code>ColumbusCSVReader.getCSVLine</code>.
+     *
+     * @param line
+     *            The line.
+     * @return The fields.
+     */
+    static String[] getCSVLine(String line) {
+        if (line == null || line.length() == 0) {
+            return EMPTY_LINE;
+        }
+
+        StringTokenizer st = new StringTokenizer(line, SEPS, false);
+        int n = st.countTokens();
+
+        String[] res = new String[n];
+        for (int i = 0; i < n; i++) {
+            res[i] = st.nextToken().trim();
+        }
+        return res;
+    }
+
+    /**
+     * Parses a coordinate like the former <code>createWayPoint</code>:
+     * substring without the hemisphere letter and
+     * <code>Double.parseDouble</code>.
+     *
+     * @param value
+     *            The value of the LATITUDE N/S or LONGITUDE E/W column.
+     * @return The coordinate in degrees or NaN, if the value is malformed.
+     */
+    static double parseCoordinate(String value) {
+        try {
+            double d = Double.parseDouble(value.substring(0, value.length() - 1));
+            return value.endsWith("S") || value.endsWith("W") ? -d : d;
+        } catch (NumberFormatException | StringIndexOutOfBoundsException ex) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Parses date and time like the former <code>createWayPoint</code> with a
+     * new <code>SimpleDateFormat</code> per record.
+     *
+     * @param date
+     *            The value of the DATE column.
+     * @param time
+     *            The value of the TIME column.
+     * @return The seconds since the epoch or {@link ColumbusRecord#NO_TIME}.
+     */
+    static long parseTime(String date, String time) {
+        SimpleDateFormat sdf = new SimpleDateFormat("yyMMdd/HHmmss");
+        try {
+            return sdf.parse(date + "/" + time).getTime() / 1000;
+        } catch (ParseException ex) {
+            return ColumbusRecord.NO_TIME;
+        }
+    }
+
+    /**
+     * Checks a file for Columbus tags like the former
+     * <code>ColumbusCSVReader.isColumbusFile</code>. Note that it reads the
+     * whole file once it has found enough Columbus lines.
+     *
+     * @param file
+     *            The file to check.
+     * @return true, if given file is a Columbus file; otherwise false.
+     * @throws IOException
+     */
+    static boolean isColumbusFile(File file) throws IOException {
+        int line = 0;
+        int columbusLines = 0;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+            StandardCharsets.UTF_8))) {
+            String strLine;
+            while ((strLine = br.readLine()) != null
+                && (line < MAX_SCAN_LINES || columbusLines > MIN_SCAN_LINES)) {
+                String[] csvFields = getCSVLine(strLine);
+                ++line;
+                if (csvFields.length == 0 || line <= 1) {
+                    continue;
+                }
+                String wptType = csvFields[1];
+                if ("T".equals(wptType) || "V".equals(wptType) || "C".equals(wptType)) {
+                    columbusLines++;
+                }
+            }
+        }
+        return columbusLines > MIN_SCAN_LINES;
+    }
+}
@@ -0,0 +1,149 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures parsing the fields of already tokenized lines: coordinates, date
+ * and time and the numeric columns. Each line of the sample keeps its own
+ * tokenizer, so tokenizing is not part of the measurement. The
+ * <code>...Baseline</code> benchmarks parse the same lines split into
+ * strings like the plugin did before (see {@link ColumbusCSVBaseline}).
+ * Scores are per line.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(ColumbusCSVFieldBenchmark.SAMPLE_SIZE)
+public class ColumbusCSVFieldBenchmark {
+    static final int SAMPLE_SIZE = 4096;
+
+    private static final int DATE = 2;
+    private static final int TIME = 3;
+    private static final int LATITUDE = 4;
+    private static final int LONGITUDE = 5;
+    private static final int HEIGHT = 6;
+    private static final int SPEED = 7;
+    private static final int HEADING = 8;
+    private static final int PDOP = 11;
+    private static final int HDOP = 12;
+    private static final int VDOP = 13;
+
+    /* Fraction of defective lines, which take the error paths */
+    @Param({ "0", "0.01" })
+    public double errorRate;
+
+    private final ColumbusCSVTokenizer[] sample = new ColumbusCSVTokenizer[SAMPLE_SIZE];
+    private final String[][] stringSample = new String[SAMPLE_SIZE][];
+    private final ColumbusCSVTimeDecoder timeDecoder = new ColumbusCSVTimeDecoder();
+
+    @Setup
+    public void setUp() {
+        byte[] data = new ColumbusCSVGenerator(ColumbusCSVGenerator.Mode.EXTENDED, 0.002, errorRate, 42)
+            .toByteArray(SAMPLE_SIZE);
+        int[] bounds = ColumbusCSVGenerator.getLineBounds(data);
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            sample[i] = new ColumbusCSVTokenizer();
+            sample[i].tokenize(buf, bounds[2 * i], bounds[2 * i + 1]);
+            stringSample[i] = ColumbusCSVBaseline.getCSVLine(new String(data, bounds[2 * i],
+                bounds[2 * i + 1] - bounds[2 * i], StandardCharsets.UTF_8));
+        }
+    }
+
+    @Benchmark
+    public long parseCoordinates() {
+        long sum = 0;
+        for (ColumbusCSVTokenizer line : sample) {
+            if (line.getFieldCount() > LONGITUDE) {
+                sum += ColumbusCSVCoordinateParser.parseLatitude(line, LATITUDE);
+                sum += ColumbusCSVCoordinateParser.parseLongitude(line, LONGITUDE);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double parseCoordinatesBaseline() {
+        double sum = 0;
+        for (String[] line : stringSample) {
+            if (line.length > LONGITUDE) {
+                sum += ColumbusCSVBaseline.parseCoordinate(line[LATITUDE]);
+                sum += ColumbusCSVBaseline.parseCoordinate(line[LONGITUDE]);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long decodeTime() {
+        long sum = 0;
+        for (ColumbusCSVTokenizer line : sample) {
+            if (line.getFieldCount() > TIME) {
+                sum += timeDecoder.decode(line, DATE, TIME);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long decodeTimeBaseline() {
+        long sum = 0;
+        for (String[] line : stringSample) {
+            if (line.length > TIME) {
+                sum += ColumbusCSVBaseline.parseTime(line[DATE], line[TIME]);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double parseNumbers() {
+        double sum = 0;
+        for (ColumbusCSVTokenizer line : sample) {
+            if (line.getFieldCount() > VDOP) {
+                sum += line.parseInt(HEIGHT, 0) + line.parseInt(SPEED, 0) + line.parseInt(HEADING, 0);
+                sum += line.parseFloat(PDOP) + line.parseFloat(HDOP) + line.parseFloat(VDOP);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double parseNumbersBaseline() {
+        // the former import parsed the DOP columns only; the ints are parsed
+        // the same way for comparison
+        double sum = 0;
+        for (String[] line : stringSample) {
+            if (line.length > VDOP) {
+                sum += parseInt(line[HEIGHT]) + parseInt(line[SPEED]) + parseInt(line[HEADING]);
+                sum += ColumbusCSVUtils.floatFromString(line[PDOP]) + ColumbusCSVUtils.floatFromString(line[HDOP])
+                    + ColumbusCSVUtils.floatFromString(line[VDOP]);
+            }
+        }
+        return sum;
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+}
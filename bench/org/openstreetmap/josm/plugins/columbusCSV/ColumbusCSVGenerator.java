@@ -0,0 +1,385 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates synthetic Columbus V-900 CSV files for the benchmarks. The output
+ * only depends on the parameters and the seed, so runs with the same
+ * parameters always measure the same input.
+ *
+ * The track is a random walk starting in Stuttgart with one record per
+ * second. A fraction of the records (the vox density) are voice records
+ * (tag <tt>V</tt>) referencing <tt>VOXnnnnn.wav</tt>; a few records are
+ * POIs (tag <tt>C</tt>). Defective records are inserted with the given
+ * error rate: either the date is invalid or the height is unparsable.
+ *
+ * Usage: <tt>ColumbusCSVGenerator file lines [simple|extended] [voxDensity]
+ * [errorRate] [seed]</tt>
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public class ColumbusCSVGenerator {
+    /**
+     * The logging mode of the device.
+     */
+    public enum Mode {
+        /** Position, height, speed and heading only */
+        SIMPLE,
+        /** Additional fix mode, validity and DOP columns */
+        EXTENDED
+    }
+
+    private static final String SIMPLE_HEADER = "INDEX,TAG,DATE,TIME,LATITUDE N/S,LONGITUDE E/W,HEIGHT,SPEED,HEADING,VOX";
+    private static final String EXTENDED_HEADER = "INDEX,TAG,DATE,TIME,LATITUDE N/S,LONGITUDE E/W,HEIGHT,SPEED,HEADING,"
+        + "FIX MODE,VALID,PDOP,HDOP,VDOP,VOX";
+    private static final byte[] CRLF = { '\r', '\n' };
+    /* The device pads the vox column of non-voice records with blanks */
+    private static final String NO_VOX = "        ";
+
+    /* Start of the track: 2009-04-30 20:01:34 UTC at Stuttgart */
+    private static final long START_TIME = 1241121694L;
+    private static final int START_LAT = 48850000;
+    private static final int START_LON = 9080000;
+    /* Max. step of the random walk in micro-degrees */
+    private static final int MAX_STEP = 100;
+    /* Fraction of POI records */
+    private static final double POI_DENSITY = 0.0015;
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private final Mode mode;
+    private final double voxDensity;
+    private final double errorRate;
+    private final long seed;
+
+    private int voxCount;
+
+    /**
+     * Creates a new generator.
+     *
+     * @param mode
+     *            The logging mode.
+     * @param voxDensity
+     *            The fraction of voice records, between 0 and 1.
+     * @param errorRate
+     *            The fraction of defective records, between 0 and 1.
+     * @param seed
+     *            The seed of the random numbers.
+     */
+    public ColumbusCSVGenerator(Mode mode, double voxDensity, double errorRate, long seed) {
+        if (voxDensity < 0 || voxDensity > 1) {
+            throw new IllegalArgumentException("voxDensity must be between 0 and 1");
+        }
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("errorRate must be between 0 and 1");
+        }
+        this.mode = mode;
+        this.voxDensity = voxDensity;
+        this.errorRate = errorRate;
+        this.seed = seed;
+    }
+
+    /**
+     * Gets the number of voice records written by the last call of
+     * {@link #write(OutputStream, int)}.
+     *
+     * @return
+     */
+    public int getVoxCount() {
+        return voxCount;
+    }
+
+    /**
+     * Writes a file including the header line.
+     *
+     * @param out
+     *            The stream to write to. The stream is not closed.
+     * @param lines
+     *            The number of records.
+     * @throws IOException
+     */
+    public void write(OutputStream out, int lines) throws IOException {
+        Random rnd = new Random(seed);
+        boolean extended = mode == Mode.EXTENDED;
+        byte[] line = new byte[128];
+        voxCount = 0;
+
+        out.write(ascii(extended ? EXTENDED_HEADER : SIMPLE_HEADER));
+        out.write(CRLF);
+
+        int lat = START_LAT, lon = START_LON;
+        long time = START_TIME;
+        for (int i = 1; i <= lines; i++) {
+            lat += rnd.nextInt(2 * MAX_STEP + 1) - MAX_STEP;
+            lon += rnd.nextInt(2 * MAX_STEP + 1) - MAX_STEP;
+            time++;
+
+            char tag = 'T';
+            String vox = NO_VOX;
+            double p = rnd.nextDouble();
+            if (p < voxDensity) {
+                tag = 'V';
+                vox = getVoxName(++voxCount);
+            } else if (p < voxDensity + POI_DENSITY) {
+                tag = 'C';
+            }
+
+            int n = 0;
+            n = putInt(line, n, i);
+            line[n++] = ',';
+            line[n++] = (byte) tag;
+            line[n++] = ',';
+            n = putDate(line, n, time);
+            line[n++] = ',';
+            n = putTime(line, n, time);
+            line[n++] = ',';
+            n = putCoordinate(line, n, lat, 2, 'N', 'S');
+            line[n++] = ',';
+            n = putCoordinate(line, n, lon, 3, 'E', 'W');
+            line[n++] = ',';
+            n = putInt(line, n, 300 + rnd.nextInt(50));
+            line[n++] = ',';
+            n = putInt(line, n, rnd.nextInt(120));
+            line[n++] = ',';
+            n = putInt(line, n, rnd.nextInt(360));
+            line[n++] = ',';
+            if (extended) {
+                n = putString(line, n, "3D,SPS ,");
+                n = putTenths(line, n, 10 + rnd.nextInt(30));
+                line[n++] = ',';
+                n = putTenths(line, n, 10 + rnd.nextInt(20));
+                line[n++] = ',';
+                n = putTenths(line, n, 5 + rnd.nextInt(10));
+                line[n++] = ',';
+            }
+            n = putString(line, n, vox);
+
+            if (rnd.nextDouble() < errorRate) {
+                corrupt(line, n, rnd);
+            }
+            out.write(line, 0, n);
+            out.write(CRLF);
+        }
+    }
+
+    /**
+     * Generates a file in memory.
+     *
+     * @param lines
+     *            The number of records.
+     * @return The content of the file.
+     */
+    public byte[] toByteArray(int lines) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(lines * (mode == Mode.EXTENDED ? 90 : 70));
+        try {
+            write(out, lines);
+        } catch (IOException e) {
+            // cannot happen with a byte array stream
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Generates a file and creates an (empty) audio file for each voice
+     * record in the same directory.
+     *
+     * @param file
+     *            The CSV file to create.
+     * @param lines
+     *            The number of records.
+     * @param createVox
+     *            true, if the audio files should be created.
+     * @throws IOException
+     */
+    public void generate(File file, int lines, boolean createVox) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)) {
+            write(out, lines);
+        }
+        if (createVox) {
+            File dir = file.getAbsoluteFile().getParentFile();
+            for (int i = 1; i <= voxCount; i++) {
+                File wav = new File(dir, getVoxName(i) + ".wav");
+                if (!wav.exists() && !wav.createNewFile()) {
+                    throw new IOException("Cannot create " + wav);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the name of the n-th voice record (without extension).
+     *
+     * @param n
+     *            The number of the voice record, starting with 1.
+     * @return
+     */
+    public static String getVoxName(int n) {
+        return String.format(Locale.ROOT, "VOX%05d", n);
+    }
+
+    /**
+     * Finds the records of a generated file.
+     *
+     * @param data
+     *            The content of the file.
+     * @return Start (inclusive) and end offset (exclusive, without line
+     *         break) of each record; the header line is skipped.
+     */
+    public static int[] getLineBounds(byte[] data) {
+        int[] bounds = new int[1024];
+        int count = 0;
+        int start = -1;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != '\n') {
+                continue;
+            }
+            int end = i > 0 && data[i - 1] == '\r' ? i - 1 : i;
+            if (start >= 0) {
+                if (count + 2 > bounds.length) {
+                    bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                }
+                bounds[count++] = start;
+                bounds[count++] = end;
+            }
+            start = i + 1;
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Damages a field of the line in one of the ways seen in real files.
+     * Only fields the import tolerates are damaged, so generated files can
+     * always be imported.
+     */
+    private static void corrupt(byte[] line, int n, Random rnd) {
+        if (rnd.nextBoolean()) {
+            // month 13
+            int date = indexOfField(line, n, 2);
+            line[date + 2] = '1';
+            line[date + 3] = '3';
+        } else {
+            // bit error in the height column
+            line[indexOfField(line, n, 6)] = '#';
+        }
+    }
+
+    private static int indexOfField(byte[] line, int n, int field) {
+        int i = 0;
+        for (int f = 0; f < field && i < n; i++) {
+            if (line[i] == ',') {
+                f++;
+            }
+        }
+        return i;
+    }
+
+    private static int putDate(byte[] line, int n, long time) {
+        // civil date from days since 1970-01-01, see ColumbusGpxWriter
+        long z = Math.floorDiv(time, SECONDS_PER_DAY) + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+        n = putTwoDigits(line, n, year % 100);
+        n = putTwoDigits(line, n, month);
+        return putTwoDigits(line, n, day);
+    }
+
+    private static int putTime(byte[] line, int n, long time) {
+        int secs = (int) Math.floorMod(time, SECONDS_PER_DAY);
+        n = putTwoDigits(line, n, secs / 3600);
+        n = putTwoDigits(line, n, secs / 60 % 60);
+        return putTwoDigits(line, n, secs % 60);
+    }
+
+    /* Writes e.g. 48.850000N resp. 009.080000E */
+    private static int putCoordinate(byte[] line, int n, int microDegrees, int intDigits, char pos, char neg) {
+        int v = Math.abs(microDegrees);
+        n = putDigits(line, n, v / ColumbusCSVCoordinateParser.MICRO_DEGREES, intDigits);
+        line[n++] = '.';
+        n = putDigits(line, n, v % ColumbusCSVCoordinateParser.MICRO_DEGREES, 6);
+        line[n++] = (byte) (microDegrees < 0 ? neg : pos);
+        return n;
+    }
+
+    private static int putTenths(byte[] line, int n, int tenths) {
+        n = putInt(line, n, tenths / 10);
+        line[n++] = '.';
+        line[n++] = (byte) ('0' + tenths % 10);
+        return n;
+    }
+
+    private static int putTwoDigits(byte[] line, int n, int v) {
+        return putDigits(line, n, v, 2);
+    }
+
+    private static int putDigits(byte[] line, int n, int v, int digits) {
+        for (int i = n + digits - 1; i >= n; i--) {
+            line[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        return n + digits;
+    }
+
+    private static int putInt(byte[] line, int n, int v) {
+        int digits = 1;
+        for (int t = v; t >= 10; t /= 10) {
+            digits++;
+        }
+        return putDigits(line, n, v, digits);
+    }
+
+    private static int putString(byte[] line, int n, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            line[n++] = (byte) s.charAt(i);
+        }
+        return n;
+    }
+
+    private static byte[] ascii(String s) {
+        byte[] b = new byte[s.length()];
+        putString(b, 0, s);
+        return b;
+    }
+
+    /**
+     * Generates a file from the command line.
+     *
+     * @param args
+     *            file, lines, mode (simple or extended), vox density, error
+     *            rate and seed.
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ColumbusCSVGenerator file lines [simple|extended] [voxDensity] [errorRate] [seed]");
+            System.exit(1);
+        }
+        File file = new File(args[0]);
+        int lines = Integer.parseInt(args[1]);
+        Mode mode = args.length > 2 ? Mode.valueOf(args[2].toUpperCase(Locale.ROOT)) : Mode.EXTENDED;
+        double voxDensity = args.length > 3 ? Double.parseDouble(args[3]) : 0.002;
+        double errorRate = args.length > 4 ? Double.parseDouble(args[4]) : 0;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 42;
+
+        ColumbusCSVGenerator gen = new ColumbusCSVGenerator(mode, voxDensity, errorRate, seed);
+        gen.generate(file, lines, true);
+        System.out.println(String.format(Locale.ROOT, "%s: %d lines (%s), %d vox files, %d bytes", file, lines,
+            mode, gen.getVoxCount(), file.length()));
+    }
+}
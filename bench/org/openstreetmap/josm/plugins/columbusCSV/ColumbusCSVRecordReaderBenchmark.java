@@ -0,0 +1,68 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures reading whole files: decoding all records with
+ * {@link ColumbusCSVRecordReader}. Files with up to 10 million
+ * lines can be measured with <tt>-p lines=10000000</tt>.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ColumbusCSVRecordReaderBenchmark {
+    @Param({ "10000", "1000000" })
+    public int lines;
+
+    @Param({ "SIMPLE", "EXTENDED" })
+    public ColumbusCSVGenerator.Mode mode;
+
+    @Param({ "0", "0.001" })
+    public double errorRate;
+
+    private File dir;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("columbus-csv").toFile();
+        file = new File(dir, "bench.csv");
+        new ColumbusCSVGenerator(mode, 0.002, errorRate, 42).generate(file, lines, false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        dir.delete();
+    }
+
+    @Benchmark
+    public int readRecords() throws IOException {
+        int count = 0;
+        try (ColumbusCSVRecordReader r = new ColumbusCSVRecordReader(file)) {
+            while (r.hasNext()) {
+                if (r.next().getTag() == 'T') {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,63 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures checking whether a file is a Columbus file, as done by the file
+ * chooser and the importer for every candidate file. <code>sniff</code>
+ * bypasses the cache of {@link ColumbusCSVReader#isColumbusFile(File)},
+ * <code>sniffCached</code> measures a repeated check of an unchanged file and
+ * <code>sniffBaseline</code> the former implementation, which reads the
+ * whole file of a Columbus log.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ColumbusCSVSniffBenchmark {
+    @Param({ "10000", "1000000" })
+    public int lines;
+
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("columbus-sniff", ".csv");
+        new ColumbusCSVGenerator(ColumbusCSVGenerator.Mode.EXTENDED, 0, 0, 42).generate(file, lines, false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public boolean sniff() throws IOException {
+        return ColumbusCSVReader.sniffColumbusFile(file);
+    }
+
+    @Benchmark
+    public boolean sniffCached() throws IOException {
+        return ColumbusCSVReader.isColumbusFile(file);
+    }
+
+    @Benchmark
+    public boolean sniffBaseline() throws IOException {
+        return ColumbusCSVBaseline.isColumbusFile(file);
+    }
+}
@@ -0,0 +1,80 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures splitting the lines of a file into fields. One operation
+ * tokenizes all lines of an in-memory file, so the score divided by the
+ * number of lines is the cost per line. <code>tokenizeBaseline</code>
+ * decodes each line into a string and splits it like the plugin did before
+ * (see {@link ColumbusCSVBaseline}).
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ColumbusCSVTokenizerBenchmark {
+    @Param({ "10000", "100000" })
+    public int lines;
+
+    @Param({ "SIMPLE", "EXTENDED" })
+    public ColumbusCSVGenerator.Mode mode;
+
+    private byte[] data;
+    private ByteBuffer buf;
+    private int[] bounds;
+    private final ColumbusCSVTokenizer tokenizer = new ColumbusCSVTokenizer();
+
+    @Setup
+    public void setUp() {
+        data = new ColumbusCSVGenerator(mode, 0.002, 0, 42).toByteArray(lines);
+        bounds = ColumbusCSVGenerator.getLineBounds(data);
+        buf = ByteBuffer.wrap(data);
+    }
+
+    @Benchmark
+    public int tokenize() {
+        int fields = 0;
+        for (int i = 0; i < bounds.length; i += 2) {
+            fields += tokenizer.tokenize(buf, bounds[i], bounds[i + 1]);
+        }
+        return fields;
+    }
+
+    @Benchmark
+    public int tokenizeBaseline() {
+        int fields = 0;
+        for (int i = 0; i < bounds.length; i += 2) {
+            String line = new String(data, bounds[i], bounds[i + 1] - bounds[i], StandardCharsets.UTF_8);
+            fields += ColumbusCSVBaseline.getCSVLine(line).length;
+        }
+        return fields;
+    }
+
+    @Benchmark
+    public int tokenizeAndGetVox() {
+        // the string of the vox column is the only object created per line
+        int length = 0;
+        for (int i = 0; i < bounds.length; i += 2) {
+            int n = tokenizer.tokenize(buf, bounds[i], bounds[i + 1]);
+            if (tokenizer.getFieldLength(n - 1) > 0) {
+                length += tokenizer.getString(n - 1).length();
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,90 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures resolving the vox column of voice records to audio files. The
+ * directory holds <code>voxFiles</code> empty audio files; the looked up
+ * names are upper and lower case and some of them do not exist. Like the
+ * import, the extension is appended to the vox column before the lookup.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ColumbusVoxIndexBenchmark {
+    private static final int LOOKUPS = 1024;
+    /* Fraction of names without audio file */
+    private static final double MISSING = 0.1;
+
+    @Param({ "100", "10000" })
+    public int voxFiles;
+
+    private File dir;
+    private ColumbusVoxIndex index;
+    private final String[] names = new String[LOOKUPS];
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("columbus-vox").toFile();
+        for (int i = 1; i <= voxFiles; i++) {
+            new File(dir, ColumbusCSVGenerator.getVoxName(i) + ".wav").createNewFile();
+        }
+        index = new ColumbusVoxIndex(dir);
+
+        Random rnd = new Random(42);
+        for (int i = 0; i < LOOKUPS; i++) {
+            int n = rnd.nextDouble() < MISSING ? voxFiles + 1 + i : 1 + rnd.nextInt(voxFiles);
+            String name = ColumbusCSVGenerator.getVoxName(n);
+            names[i] = i % 2 == 0 ? name : name.toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int resolve() {
+        int found = 0;
+        for (String name : names) {
+            if (index.getFile(name + ".wav") != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ColumbusVoxIndex buildIndex() {
+        return new ColumbusVoxIndex(dir);
+    }
+}
@@ -0,0 +1,60 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.gpx.WayPoint;
+
+/**
+ * Measures reducing a track with
+ * {@link WayPointHelper#downsampleWayPoints(List, int)}. The track consists
+ * of the positions of a generated file.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WayPointHelperBenchmark {
+    @Param({ "10000", "100000" })
+    public int points;
+
+    @Param({ "500", "5000" })
+    public int targetSize;
+
+    private List<WayPoint> track;
+
+    @Setup
+    public void setUp() {
+        byte[] data = new ColumbusCSVGenerator(ColumbusCSVGenerator.Mode.SIMPLE, 0, 0, 42).toByteArray(points);
+        int[] bounds = ColumbusCSVGenerator.getLineBounds(data);
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        ColumbusCSVTokenizer tokenizer = new ColumbusCSVTokenizer();
+        track = new ArrayList<>(points);
+        for (int i = 0; i < bounds.length; i += 2) {
+            tokenizer.tokenize(buf, bounds[i], bounds[i + 1]);
+            double lat = ColumbusCSVCoordinateParser.toDegrees(ColumbusCSVCoordinateParser.parseLatitude(tokenizer, 4));
+            double lon = ColumbusCSVCoordinateParser.toDegrees(ColumbusCSVCoordinateParser.parseLongitude(tokenizer, 5));
+            track.add(new ColumbusWayPoint(new LatLon(lat, lon), tokenizer.parseInt(6, ColumbusRecord.NO_VALUE),
+                ColumbusRecord.NO_VALUE, ColumbusRecord.NO_VALUE));
+        }
+    }
+
+    @Benchmark
+    public List<WayPoint> downsample() {
+        return WayPointHelper.downsampleWayPoints(track, targetSize);
+    }
+}
@@ -0,0 +1,424 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Converts Columbus CSV files into GPX or binary track files without JOSM's
+ * user interface, e.g. on a server:
+ *
+ * <pre>
+ * java -cp josm.jar:ColumbusCSV.jar org.openstreetmap.josm.plugins.columbusCSV.ColumbusCSVBatchConverter \
+ *     [-format gpx|bin] [-out dir] [-threads n] [-quiet] file|dir|glob...
+ * </pre>
+ *
+ * Directories are searched recursively for <tt>*.csv</tt> files, globs like
+ * <tt>dumps/2009-&#42;&#42;/&#42;.CSV</tt> are expanded relative to their
+ * first directory without wildcards. Files which are not Columbus files are
+ * skipped. The output is written next to the input or, with <tt>-out</tt>,
+ * into the same relative location below the output directory.
+ *
+ * The files are converted concurrently on a fixed number of threads, one
+ * file per thread; a single file is streamed by {@link ColumbusGpxWriter} resp.
+ * read into a {@link ColumbusTrackStore} for the binary format (see
+ * {@link ColumbusTrackStore#save(File)}). The options are the defaults of
+ * the preferences ({@link ColumbusCSVImportOptions#defaults()}).
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public class ColumbusCSVBatchConverter {
+    /**
+     * The output formats.
+     */
+    public enum Format {
+        /** GPX 1.1 */
+        GPX(".gpx"),
+        /** Binary track file, see {@link ColumbusTrackStore#save(File)} */
+        BIN(ColumbusTrackStore.BINARY_FILE_EXT);
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * Gets the extension of output files including the dot.
+         *
+         * @return
+         */
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final String GLOB_CHARS = "*?[{";
+
+    private final ColumbusCSVImportOptions options;
+    private final Format format;
+    private final File outDir;
+    private final int threads;
+    private boolean quiet;
+
+    /**
+     * Creates a new converter.
+     *
+     * @param options
+     *            The options of the conversion.
+     * @param format
+     *            The output format.
+     * @param outDir
+     *            The output directory or null to write the output next to the
+     *            input.
+     * @param threads
+     *            The number of files converted concurrently.
+     */
+    public ColumbusCSVBatchConverter(ColumbusCSVImportOptions options, Format format, File outDir, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be greater than zero");
+        }
+        this.options = options;
+        this.format = format;
+        this.outDir = outDir;
+        this.threads = threads;
+    }
+
+    /**
+     * Suppresses the statistics of each file; only the totals are printed.
+     *
+     * @param quiet
+     */
+    public void setQuiet(boolean quiet) {
+        this.quiet = quiet;
+    }
+
+    /**
+     * Converts all Columbus files found for the given arguments.
+     *
+     * @param args
+     *            Files, directories or globs.
+     * @return The number of files which could not be converted.
+     * @throws IOException
+     *             if a directory cannot be searched.
+     * @throws InterruptedException
+     */
+    public int convertAll(List<String> args) throws IOException, InterruptedException {
+        List<Source> sources = new ArrayList<>();
+        for (String arg : args) {
+            findSources(arg, sources);
+        }
+        if (sources.isEmpty()) {
+            System.err.println("No files found");
+            return 0;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, sources.size()), r -> {
+            Thread t = new Thread(r, "ColumbusCSV-batch");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletionService<Result> completion = new ExecutorCompletionService<>(executor);
+        long start = System.nanoTime();
+        try {
+            for (Source source : sources) {
+                completion.submit(() -> convert(source));
+            }
+
+            int converted = 0, skipped = 0, failed = 0;
+            long bytes = 0, points = 0;
+            for (int i = 0; i < sources.size(); i++) {
+                Result result;
+                try {
+                    result = completion.take().get();
+                } catch (ExecutionException e) {
+                    // convert catches all exceptions
+                    throw new IllegalStateException(e.getCause());
+                }
+                if (result.error != null) {
+                    failed++;
+                    System.err.println(result.source.file + ": " + result.error);
+                } else if (result.summary == null) {
+                    skipped++;
+                    if (!quiet) {
+                        System.out.println(result.source.file + ": not a Columbus file, skipped");
+                    }
+                } else {
+                    converted++;
+                    bytes += result.size;
+                    points += result.summary.getTrackPoints() + result.summary.getWayPoints();
+                    if (!quiet) {
+                        System.out.println(result);
+                    }
+                }
+            }
+
+            double secs = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format(Locale.ROOT,
+                "%d files converted, %d skipped, %d failed: %d points, %.1f MB in %.2f s "
+                    + "(%.1f MB/s, %.0f points/s, %d threads)",
+                converted, skipped, failed, points, bytes / 1e6, secs, bytes / 1e6 / secs, points / secs,
+                Math.min(threads, sources.size())));
+            return failed;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Converts a single file.
+     *
+     * @param csvFile
+     *            The Columbus file.
+     * @param outFile
+     *            The output file.
+     * @return The summary of the conversion.
+     * @throws IOException
+     */
+    public ColumbusImportSummary convert(File csvFile, File outFile) throws IOException {
+        if (format == Format.GPX) {
+            return new ColumbusGpxWriter(options).convert(csvFile, outFile);
+        }
+
+        ColumbusTrackStore store = ColumbusTrackStore.read(csvFile);
+        store.save(outFile);
+        return summarize(store, new ColumbusVoxIndex(csvFile.getAbsoluteFile().getParentFile()));
+    }
+
+    /**
+     * Computes the summary of the records like an import does.
+     */
+    private ColumbusImportSummary summarize(ColumbusTrackStore store, ColumbusVoxIndex voxIndex) {
+        ColumbusTrackStatistics statistics = new ColumbusTrackStatistics();
+        ColumbusTrackSegmenter segmenter = options.splitTracks()
+            ? new ColumbusTrackSegmenter(options.segmentTimeGap(), options.segmentDistance()) : null;
+        int wayPoints = 0, trackPoints = 0, audioPoints = 0, missingAudio = 0, rescuedAudio = 0;
+        for (int i = 0; i < store.size(); i++) {
+            // a record with a vox file is a way point in any case, see ColumbusGpxWriter
+            String voxName = store.getVoxFile(i);
+            char tag = store.getTag(i);
+            boolean isTrackPoint = tag == 'T' && voxName == null;
+            boolean segmentStart = segmenter != null && segmenter.isSegmentStart(store, i, isTrackPoint);
+            if (isTrackPoint) {
+                statistics.add(store, i, segmentStart);
+                trackPoints++;
+                continue;
+            }
+            wayPoints++;
+            if (voxName != null) {
+                boolean found = voxIndex.getFile(voxName + ".wav") != null;
+                if (tag == 'V') {
+                    if (found) {
+                        audioPoints++;
+                    } else {
+                        missingAudio++;
+                    }
+                } else if (tag == 'C' && found) {
+                    rescuedAudio++;
+                }
+            }
+        }
+        return new ColumbusImportSummary(wayPoints, trackPoints, audioPoints, missingAudio, rescuedAudio,
+            statistics);
+    }
+
+    private Result convert(Source source) {
+        Result result = new Result(source);
+        long start = System.nanoTime();
+        try {
+            if (ColumbusCSVReader.isColumbusFile(source.file)) {
+                File outFile = getOutputFile(source);
+                File dir = outFile.getParentFile();
+                if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("Cannot create directory " + dir);
+                }
+                result.size = source.file.length();
+                result.summary = convert(source.file, outFile);
+            }
+        } catch (IOException | RuntimeException e) {
+            result.error = e;
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private File getOutputFile(Source source) {
+        String name = source.file.getName();
+        int dot = name.lastIndexOf('.');
+        name = (dot > 0 ? name.substring(0, dot) : name) + format.getExtension();
+        if (outDir == null) {
+            return new File(source.file.getAbsoluteFile().getParentFile(), name);
+        }
+        Path parent = source.root.relativize(source.file.toPath().toAbsolutePath()).getParent();
+        return new File(parent != null ? new File(outDir, parent.toString()) : outDir, name);
+    }
+
+    /**
+     * Adds the files matching a command line argument.
+     */
+    private static void findSources(String arg, List<Source> sources) throws IOException {
+        int glob = indexOfGlob(arg);
+        if (glob < 0) {
+            Path path = Paths.get(arg).toAbsolutePath();
+            if (Files.isDirectory(path)) {
+                PathMatcher csv = p -> p.getFileName().toString().toLowerCase(Locale.ENGLISH)
+                    .endsWith(ColumbusCSVImporter.COLUMBUS_FILE_EXT_DOT);
+                walk(path, csv, sources);
+            } else if (Files.isRegularFile(path)) {
+                Path parent = path.getParent();
+                sources.add(new Source(path.toFile(), parent != null ? parent : path));
+            } else {
+                System.err.println(arg + ": no such file or directory");
+            }
+            return;
+        }
+
+        // split into the directory without wildcards and the pattern
+        int sep = Math.max(arg.lastIndexOf('/', glob), arg.lastIndexOf(File.separatorChar, glob));
+        Path root = Paths.get(sep >= 0 ? arg.substring(0, sep + 1) : ".").toAbsolutePath().normalize();
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + arg.substring(sep + 1));
+        if (Files.isDirectory(root)) {
+            walk(root, p -> matcher.matches(root.relativize(p)), sources);
+        }
+    }
+
+    private static int indexOfGlob(String arg) {
+        for (int i = 0; i < arg.length(); i++) {
+            if (GLOB_CHARS.indexOf(arg.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void walk(Path root, PathMatcher matcher, List<Source> sources) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && matcher.matches(file)) {
+                    sources.add(new Source(file.toFile(), root));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                System.err.println(file + ": " + e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * An input file and the directory its output path is relative to.
+     */
+    private static final class Source {
+        final File file;
+        final Path root;
+
+        Source(File file, Path root) {
+            this.file = file;
+            this.root = root;
+        }
+    }
+
+    /**
+     * The outcome of converting a single file.
+     */
+    private static final class Result {
+        final Source source;
+        ColumbusImportSummary summary;
+        Exception error;
+        long size;
+        long nanos;
+
+        Result(Source source) {
+            this.source = source;
+        }
+
+        @Override
+        public String toString() {
+            ColumbusTrackStatistics s = summary.getStatistics();
+            double millis = nanos / 1e6;
+            return String.format(Locale.ROOT,
+                "%s: %d track points in %d segments, %d way points (%d with audio, %d missing), %.2f km, "
+                    + "%d s moving, %.1f MB in %.0f ms (%.1f MB/s)",
+                source.file, summary.getTrackPoints(), s.getSegmentCount(), summary.getWayPoints(),
+                summary.getAudioPoints(), summary.getMissingAudio(), s.getDistance() / 1000, s.getMovingTime(),
+                size / 1e6, millis, size / 1e3 / millis);
+        }
+    }
+
+    /**
+     * Runs the converter from the command line.
+     *
+     * @param args
+     *            <tt>[-format gpx|bin] [-out dir] [-threads n] [-quiet] file|dir|glob...</tt>
+     */
+    public static void main(String[] args) {
+        Format format = Format.GPX;
+        File outDir = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean quiet = false;
+        List<String> files = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                case "-format":
+                    format = Format.valueOf(args[++i].toUpperCase(Locale.ENGLISH));
+                    break;
+                case "-out":
+                    outDir = new File(args[++i]);
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-quiet":
+                    quiet = true;
+                    break;
+                default:
+                    files.add(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            files.clear();
+        }
+        if (files.isEmpty() || threads <= 0) {
+            System.err.println("Usage: ColumbusCSVBatchConverter [-format gpx|bin] [-out dir] [-threads n] [-quiet] "
+                + "file|dir|glob...");
+            System.exit(2);
+        }
+
+        ColumbusCSVBatchConverter converter = new ColumbusCSVBatchConverter(ColumbusCSVImportOptions.defaults(),
+            format, outDir, threads);
+        converter.setQuiet(quiet);
+        int failed;
+        try {
+            failed = converter.convertAll(files);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            failed = 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed = 1;
+        }
+        System.exit(failed > 0 ? 1 : 0);
+    }
+}
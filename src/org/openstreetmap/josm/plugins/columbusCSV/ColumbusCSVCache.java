@@ -0,0 +1,285 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Binary cache of already parsed Columbus CSV files. Each source file is
+ * stored as {@link ColumbusTrackStore} in a file with extension
+ * {@link #CACHE_FILE_EXT} within the cache directory, so that re-importing an
+ * unchanged file is a bulk read instead of tokenizing and parsing.
+ *
+ * A cache entry is keyed by the path, size and modification time of the
+ * source plus a hash of its first and last {@link #HASH_SAMPLE_SIZE} bytes;
+ * entries which do not match the source anymore are dropped. The total size
+ * of the cache directory is bounded; the least recently used entries are
+ * evicted first.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public class ColumbusCSVCache {
+    /**
+     * Extension of cache files.
+     */
+    public static final String CACHE_FILE_EXT = ".colcache";
+    /**
+     * Number of bytes at start and end of the source which are hashed.
+     */
+    public static final int HASH_SAMPLE_SIZE = 64 * 1024;
+
+    private static final int MAGIC = 0x43435356; // "CCSV"
+    private static final int VERSION = 4;
+    private static final String CACHE_DIR = "columbuscsv";
+
+    private final File dir;
+    private final long maxSize;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param dir
+     *            The directory containing the cache files.
+     * @param maxSize
+     *            The maximum total size of all cache files in bytes.
+     */
+    public ColumbusCSVCache(File dir, long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets the cache within the JOSM cache directory, sized according to the
+     * preferences.
+     *
+     * @return
+     */
+    public static ColumbusCSVCache getDefault() {
+        File dir = new File(Config.getDirs().getCacheDirectory(true), CACHE_DIR);
+        return new ColumbusCSVCache(dir, ColumbusCSVPreferences.cacheMaxSize() * 1024L * 1024L);
+    }
+
+    /**
+     * Loads the cached records of a source file.
+     *
+     * @param source
+     *            The Columbus CSV file.
+     * @return The records or null, if the file is not cached or has changed
+     *         since.
+     */
+    public ColumbusTrackStore load(File source) {
+        File cacheFile = getCacheFile(source);
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+
+        boolean outdated;
+        try (FileChannel ch = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ch.map(MapMode.READ_ONLY, 0, ch.size());
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                throw new IOException("Unknown cache format");
+            }
+            byte[] path = new byte[buf.getShort() & 0xFFFF];
+            buf.get(path);
+            long size = buf.getLong();
+            long modified = buf.getLong();
+            long hash = buf.getLong();
+
+            outdated = !getPath(source).equals(new String(path, StandardCharsets.UTF_8))
+                || size != source.length() || modified != source.lastModified()
+                || hash != computeHash(source);
+            if (!outdated) {
+                ColumbusTrackStore store = ColumbusTrackStore.readFrom(buf);
+                // mark as recently used
+                if (!cacheFile.setLastModified(System.currentTimeMillis())) {
+                    Logging.warn("Cannot touch cache file " + cacheFile);
+                }
+                return store;
+            }
+            Logging.info("Cached data of " + source + " is outdated");
+        } catch (IOException | RuntimeException e) {
+            // e.g. a truncated file after a crash or a full disk
+            Logging.warn("Cannot read cache file " + cacheFile + ": " + e);
+        }
+
+        if (!cacheFile.delete()) {
+            Logging.warn("Cannot delete cache file " + cacheFile);
+        }
+        return null;
+    }
+
+    /**
+     * Stores the records of a source file and evicts old entries, if the
+     * cache became too large. Errors are logged only.
+     *
+     * The key has to be taken before the file is read, since the logger may
+     * still append to it; otherwise the records would be stored under the key
+     * of the grown file and later imports would miss the appended records.
+     *
+     * @param source
+     *            The Columbus CSV file.
+     * @param size
+     *            The size of the file, when it has been read.
+     * @param modified
+     *            The modification time of the file, taken before it has
+     *            been read.
+     * @param hash
+     *            The hash of the file (see {@link #computeHash(FileChannel, long)}).
+     * @param store
+     *            The records of the file.
+     */
+    public void save(File source, long size, long modified, long hash, ColumbusTrackStore store) {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Logging.warn("Cannot create cache directory " + dir);
+            return;
+        }
+
+        File cacheFile = getCacheFile(source);
+        File tmpFile = new File(dir, cacheFile.getName() + ".tmp" + Thread.currentThread().getId());
+        try {
+            try (FileChannel ch = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                byte[] path = getPath(source).getBytes(StandardCharsets.UTF_8);
+                ByteBuffer header = ByteBuffer.allocate(34 + path.length);
+                header.putInt(MAGIC);
+                header.putInt(VERSION);
+                header.putShort((short) path.length);
+                header.put(path);
+                header.putLong(size);
+                header.putLong(modified);
+                header.putLong(hash);
+                header.flip();
+                while (header.hasRemaining()) {
+                    ch.write(header);
+                }
+                store.writeTo(ch);
+            }
+            try {
+                Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Logging.warn("Cannot write cache file " + cacheFile + ": " + e.getMessage());
+            if (!tmpFile.delete()) {
+                tmpFile.deleteOnExit();
+            }
+            return;
+        }
+        evict();
+    }
+
+    /**
+     * Deletes the least recently used cache files until the cache fits into
+     * its maximum size.
+     */
+    void evict() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(CACHE_FILE_EXT));
+        if (files == null) {
+            return;
+        }
+
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+        if (total <= maxSize) {
+            return;
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File f : files) {
+            if (total <= maxSize) {
+                break;
+            }
+            long len = f.length();
+            if (f.delete()) {
+                total -= len;
+            } else {
+                Logging.warn("Cannot delete cache file " + f);
+            }
+        }
+    }
+
+    /**
+     * Gets the cache file of a source file.
+     *
+     * @param source
+     *            The Columbus CSV file.
+     * @return
+     */
+    File getCacheFile(File source) {
+        CRC32 crc = new CRC32();
+        crc.update(getPath(source).getBytes(StandardCharsets.UTF_8));
+        return new File(dir, source.getName() + "-" + Long.toHexString(crc.getValue()) + CACHE_FILE_EXT);
+    }
+
+    private static String getPath(File source) {
+        return source.getAbsolutePath();
+    }
+
+    /**
+     * Computes the hash of the first and last {@link #HASH_SAMPLE_SIZE} bytes
+     * of a file.
+     *
+     * @param source
+     *            The file to hash.
+     * @return
+     * @throws IOException
+     */
+    static long computeHash(File source) throws IOException {
+        try (FileChannel ch = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            return computeHash(ch, ch.size());
+        }
+    }
+
+    /**
+     * Computes the hash of the first and last {@link #HASH_SAMPLE_SIZE} bytes
+     * of the first <tt>size</tt> bytes of a file. Bytes appended meanwhile
+     * are ignored.
+     *
+     * @param ch
+     *            The channel of the file.
+     * @param size
+     *            The size of the file to hash.
+     * @return
+     * @throws IOException
+     */
+    static long computeHash(FileChannel ch, long size) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buf = ByteBuffer.allocate(HASH_SAMPLE_SIZE);
+        hashRange(ch, buf, 0, size, crc);
+        if (size > HASH_SAMPLE_SIZE) {
+            hashRange(ch, buf, Math.max(HASH_SAMPLE_SIZE, size - HASH_SAMPLE_SIZE), size, crc);
+        }
+        return crc.getValue();
+    }
+
+    private static void hashRange(FileChannel ch, ByteBuffer buf, long offset, long size, CRC32 crc)
+        throws IOException {
+        buf.clear().limit((int) Math.min(buf.capacity(), size - offset));
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, offset + buf.position());
+            if (n < 0) {
+                break;
+            }
+        }
+        buf.flip();
+        crc.update(buf);
+    }
+}
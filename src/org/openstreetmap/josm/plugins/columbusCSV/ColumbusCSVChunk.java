@@ -0,0 +1,119 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.data.gpx.WayPoint;
+
+/**
+ * Holds the parse result of a byte range of a Columbus CSV file. Each chunk
+ * is parsed by a single thread into its own record store, way point buffer
+ * and counters, so chunks can be parsed in parallel and merged in file order
+ * afterwards. If the records are already available (e.g. from the cache), a
+ * chunk covers a range of records instead of a byte range.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+class ColumbusCSVChunk {
+    /* File range of this chunk; start is always the beginning of a line */
+    final long start;
+    final long end;
+
+    /* Records of this chunk */
+    final ColumbusTrackStore store;
+    int from, to;
+    /* Number of records of the file preceding the store of this chunk */
+    int recordOffset;
+
+    /* All way points in file order */
+    final List<WayPoint> wayPoints = new ArrayList<>();
+    final Map<String, WayPoint> voxFiles = new HashMap<>();
+    /* Record parser caching the last date of this chunk */
+    final ColumbusRecordParser parser = new ColumbusRecordParser();
+
+    /* Number of lines read including header and empty lines */
+    int lines;
+    int trackPoints, wayPointsWithoutTrack, audioPoints, missingAudio, rescuedAudio;
+    int dateConversionErrors, dopConversionErrors;
+    int firstVoxNumber = Integer.MAX_VALUE, lastVoxNumber = Integer.MIN_VALUE;
+
+    /* Error while parsing a line and the (chunk relative) line number */
+    Exception lineError;
+    int errorLine;
+    /*
+     * Continue after lines, which cannot be parsed; lineError and errorLine
+     * then describe the first of them
+     */
+    boolean skipLineErrors;
+    int skippedLines;
+    /* Error while reading the file */
+    IOException readError;
+
+    /**
+     * Creates a new chunk.
+     *
+     * @param start
+     *            The file offset of the first line of the chunk.
+     * @param end
+     *            The file offset right behind the last line of the chunk.
+     */
+    ColumbusCSVChunk(long start, long end) {
+        this.start = start;
+        this.end = end;
+        this.store = new ColumbusTrackStore();
+    }
+
+    /**
+     * Creates a new chunk for already parsed records.
+     *
+     * @param store
+     *            The store containing the records.
+     * @param from
+     *            The first record of the chunk (inclusive).
+     * @param to
+     *            The last record of the chunk (exclusive).
+     */
+    ColumbusCSVChunk(ColumbusTrackStore store, int from, int to) {
+        this.start = -1;
+        this.end = -1;
+        this.store = store;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Checks, if this chunk starts with the header line of the file.
+     *
+     * @return
+     */
+    boolean containsHeader() {
+        return start == 0;
+    }
+
+    /**
+     * Gets the number of a record within the file for messages.
+     *
+     * @param i
+     *            The index of the record in the store of this chunk.
+     * @return The record number starting at 1.
+     */
+    int getRecordNumber(int i) {
+        return recordOffset + i + 1;
+    }
+
+    /**
+     * Records the number of a linked vox file.
+     *
+     * @param voxNum
+     *            The number of the vox file.
+     */
+    void addVoxNumber(int voxNum) {
+        lastVoxNumber = Math.max(voxNum, lastVoxNumber);
+        firstVoxNumber = Math.min(voxNum, firstVoxNumber);
+    }
+}
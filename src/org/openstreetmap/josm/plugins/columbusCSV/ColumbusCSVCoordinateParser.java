@@ -0,0 +1,139 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+/**
+ * Parses the LATITUDE N/S and LONGITUDE E/W columns of a Columbus CSV file.
+ * The V-900 writes coordinates in the fixed layout <tt>ddd.dddddd[NSEW]</tt>,
+ * so the digits and the hemisphere letter are read in place and converted
+ * into an exact number of micro-degrees. Malformed input is reported by
+ * {@link #INVALID} instead of an exception.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public final class ColumbusCSVCoordinateParser {
+    /**
+     * Returned for malformed coordinates.
+     */
+    public static final int INVALID = Integer.MIN_VALUE;
+    /**
+     * Micro-degrees per degree.
+     */
+    public static final int MICRO_DEGREES = 1000000;
+
+    private static final int FRACTION_DIGITS = 6;
+    private static final int MAX_LAT = 90 * MICRO_DEGREES;
+    private static final int MAX_LON = 180 * MICRO_DEGREES;
+
+    private ColumbusCSVCoordinateParser() {
+        // Private constructor for the utility class.
+    }
+
+    /**
+     * Parses a latitude like <tt>48.856330N</tt>.
+     *
+     * @param csvLine
+     *            The tokenizer holding the current line.
+     * @param field
+     *            The index of the column.
+     * @return The latitude in micro-degrees or {@link #INVALID}.
+     */
+    public static int parseLatitude(ColumbusCSVTokenizer csvLine, int field) {
+        return parseMicroDegrees(csvLine, field, 'N', 'S', MAX_LAT);
+    }
+
+    /**
+     * Parses a longitude like <tt>009.089779E</tt>.
+     *
+     * @param csvLine
+     *            The tokenizer holding the current line.
+     * @param field
+     *            The index of the column.
+     * @return The longitude in micro-degrees or {@link #INVALID}.
+     */
+    public static int parseLongitude(ColumbusCSVTokenizer csvLine, int field) {
+        return parseMicroDegrees(csvLine, field, 'E', 'W', MAX_LON);
+    }
+
+    /**
+     * Parses a coordinate with trailing hemisphere letter. Missing fraction
+     * digits are padded with zeros; more than six fraction digits are rounded.
+     *
+     * @param csvLine
+     *            The tokenizer holding the current line.
+     * @param field
+     *            The index of the column.
+     * @param pos
+     *            The hemisphere letter of positive values.
+     * @param neg
+     *            The hemisphere letter of negative values.
+     * @param max
+     *            The maximum absolute value in micro-degrees.
+     * @return The coordinate in micro-degrees or {@link #INVALID}.
+     */
+    static int parseMicroDegrees(ColumbusCSVTokenizer csvLine, int field, char pos, char neg, int max) {
+        int len = csvLine.getFieldLength(field) - 1;
+        if (len < 1) {
+            return INVALID;
+        }
+        byte hemisphere = csvLine.byteAt(field, len);
+        if (hemisphere != pos && hemisphere != neg) {
+            return INVALID;
+        }
+
+        long val = 0;
+        int digits = 0;
+        int fraction = -1;
+        boolean roundUp = false;
+        for (int i = 0; i < len; i++) {
+            byte b = csvLine.byteAt(field, i);
+            if (b == '.' && fraction < 0) {
+                fraction = 0;
+                continue;
+            }
+            int d = b - '0';
+            if (d < 0 || d > 9) {
+                return INVALID;
+            }
+            digits++;
+            if (fraction < 0) {
+                val = val * 10 + d;
+                if (val > max) {
+                    return INVALID;
+                }
+            } else if (fraction < FRACTION_DIGITS) {
+                val = val * 10 + d;
+                fraction++;
+            } else if (fraction++ == FRACTION_DIGITS) {
+                roundUp = d >= 5;
+            }
+        }
+        if (digits == 0) {
+            return INVALID;
+        }
+
+        for (int f = Math.max(fraction, 0); f < FRACTION_DIGITS; f++) {
+            val *= 10;
+        }
+        if (roundUp) {
+            val++;
+        }
+        if (val > max) {
+            return INVALID;
+        }
+        return (int) (hemisphere == neg ? -val : val);
+    }
+
+    /**
+     * Converts micro-degrees into degrees. The result is the double closest
+     * to the decimal coordinate, i. e. the same value as returned by
+     * <code>Double.parseDouble</code>.
+     *
+     * @param microDegrees
+     *            The coordinate in micro-degrees.
+     * @return The coordinate in degrees.
+     */
+    public static double toDegrees(int microDegrees) {
+        return microDegrees / (double) MICRO_DEGREES;
+    }
+}
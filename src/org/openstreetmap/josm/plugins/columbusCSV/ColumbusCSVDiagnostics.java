@@ -0,0 +1,172 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Collects the warnings of an import, so that they can be shown as a single
+ * summary after the import instead of interrupting it. Only the first
+ * {@link #MAX_MESSAGES} messages of each kind are kept and only the first
+ * {@link #MAX_LOGGED} are written to the log; all further ones are just
+ * counted. Instances can be used by several threads.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public class ColumbusCSVDiagnostics {
+    /**
+     * Max. number of messages kept per kind.
+     */
+    public static final int MAX_MESSAGES = 20;
+    /**
+     * Max. number of messages logged per kind.
+     */
+    public static final int MAX_LOGGED = 10;
+
+    /**
+     * The kinds of diagnostics.
+     */
+    public enum Kind {
+        /** Audio file referenced by a record does not exist */
+        MISSING_AUDIO("Missing audio files"),
+        /** Audio file not referenced by any record has been linked */
+        RESCUED_AUDIO("Rescued audio files"),
+        /** Record with invalid date or time */
+        INVALID_DATE("Invalid date/time values"),
+        /** Record with invalid DOP value in extended mode */
+        INVALID_DOP("Invalid DOP values");
+
+        private final String title;
+
+        Kind(String title) {
+            this.title = title;
+        }
+
+        /**
+         * Gets the (untranslated) title of this kind.
+         *
+         * @return
+         */
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    private final Map<Kind, AtomicInteger> counts = new EnumMap<>(Kind.class);
+    private final Map<Kind, List<String>> messages = new EnumMap<>(Kind.class);
+
+    /**
+     * Creates an empty collector.
+     */
+    public ColumbusCSVDiagnostics() {
+        for (Kind kind : Kind.values()) {
+            counts.put(kind, new AtomicInteger());
+            messages.put(kind, new ArrayList<>());
+        }
+    }
+
+    /**
+     * Adds a diagnostic message.
+     *
+     * @param kind
+     *            The kind of the message.
+     * @param message
+     *            The message.
+     */
+    public void report(Kind kind, String message) {
+        int n = counts.get(kind).incrementAndGet();
+        if (n <= MAX_MESSAGES) {
+            List<String> list = messages.get(kind);
+            synchronized (list) {
+                list.add(message);
+            }
+        }
+        if (n <= MAX_LOGGED) {
+            Logging.warn(message);
+        } else if (n == MAX_LOGGED + 1) {
+            Logging.warn("Further messages suppressed: " + kind.getTitle());
+        }
+    }
+
+    /**
+     * Gets the number of messages of the given kind.
+     *
+     * @param kind
+     * @return
+     */
+    public int getCount(Kind kind) {
+        return counts.get(kind).get();
+    }
+
+    /**
+     * Gets the kept messages of the given kind.
+     *
+     * @param kind
+     * @return
+     */
+    public List<String> getMessages(Kind kind) {
+        List<String> list = messages.get(kind);
+        synchronized (list) {
+            return Collections.unmodifiableList(new ArrayList<>(list));
+        }
+    }
+
+    /**
+     * Checks, if there are any messages of the given kinds.
+     *
+     * @param kinds
+     * @return
+     */
+    public boolean hasMessages(Kind... kinds) {
+        for (Kind kind : kinds) {
+            if (getCount(kind) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets a text listing the counts and kept messages of the given kinds.
+     *
+     * @param kinds
+     *            The kinds to include.
+     * @return The text or an empty string, if there are no such messages.
+     */
+    public String getSummary(Kind... kinds) {
+        StringBuilder sb = new StringBuilder();
+        for (Kind kind : kinds) {
+            int n = getCount(kind);
+            if (n == 0) {
+                continue;
+            }
+            sb.append(String.format("%s: %d%n", kind.getTitle(), n));
+            for (String msg : getMessages(kind)) {
+                sb.append("  ").append(msg).append(String.format("%n"));
+            }
+            if (n > MAX_MESSAGES) {
+                sb.append(String.format("  ... and %d more%n", n - MAX_MESSAGES));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the counts of all kinds to the log.
+     */
+    public void logSummary() {
+        for (Kind kind : Kind.values()) {
+            int n = getCount(kind);
+            if (n > MAX_LOGGED) {
+                Logging.warn(String.format("%s: %d in total", kind.getTitle(), n));
+            }
+        }
+    }
+}
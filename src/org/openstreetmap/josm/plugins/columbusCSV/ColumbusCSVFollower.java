@@ -0,0 +1,430 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.awt.GraphicsEnvironment;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+
+import org.openstreetmap.josm.data.gpx.GpxData;
+import org.openstreetmap.josm.data.gpx.GpxTrack;
+import org.openstreetmap.josm.data.gpx.WayPoint;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Continues the import of a Columbus file, which is still written by the
+ * logger (e.g. a V-900 connected via USB). The follower starts where the
+ * import has stopped, parses only the lines appended since the last poll
+ * and adds the new points to the imported {@link GpxData}. The import has to
+ * be run with {@link ColumbusCSVImportOptions#followFile()} set, so that it
+ * stops before a line still being written:
+ *
+ * <pre>
+ * GpxData gpx = reader.transformColumbusCSV(file, ctx.reset(options.withFollowFile(true)), monitor);
+ * ColumbusCSVFollower follower = new ColumbusCSVFollower(reader, ctx, gpx);
+ * follower.start(ColumbusCSVFollower.DEFAULT_INTERVAL);
+ * ...
+ * follower.close();
+ * </pre>
+ *
+ * The file is polled instead of being watched by a
+ * {@link java.nio.file.WatchService}, because the file systems of USB mass
+ * storage devices and network shares often do not report changes. A poll
+ * of an unchanged file only compares its length.
+ *
+ * New track points are collected in a tail track, which replaces its
+ * predecessor in the {@link GpxData} on each poll. After
+ * {@link #MAX_TAIL_POINTS} points the tail track is kept and a new one is
+ * started, so that the work per poll depends on the number of appended
+ * lines only and not on the length of the log. Appended points are not
+ * simplified. If the file shrinks (e.g. the log has been deleted and
+ * restarted), it is read again from the start. The directory is listed
+ * again whenever an appended record refers to an audio file, which was not
+ * there at the last listing.
+ *
+ * Layers derived from the data (e.g. the marker layer of the import) do not
+ * see the new way points by themselves; register a way point listener via
+ * {@link #setWayPointListener(Consumer)} to update them.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public class ColumbusCSVFollower implements Closeable {
+    /**
+     * Default poll interval in milliseconds.
+     */
+    public static final int DEFAULT_INTERVAL = 2000;
+    /**
+     * Max. number of points of a tail track before a new one is started.
+     */
+    public static final int MAX_TAIL_POINTS = 10000;
+
+    /* Bytes read at once while searching for the end of the last line */
+    private static final int SCAN_SIZE = 4096;
+
+    private final ColumbusCSVReader reader;
+    private final ColumbusImportContext ctx;
+    private final GpxData gpxData;
+    private final File file;
+    private final ColumbusTrackSegmenter segmenter;
+    private final ColumbusTrackStatistics statistics;
+
+    /* Number of bytes and records imported so far */
+    private volatile long offset;
+    private int records;
+    /* The next track point starts a new segment */
+    private boolean restart;
+    /* Last track point of all frozen tail tracks (or of the import) */
+    private WayPoint lastTrackPoint;
+    /* Segments of the current tail track and the track shown in gpxData */
+    private List<Collection<WayPoint>> tailSegments = new ArrayList<>();
+    private int tailPoints;
+    private GpxTrack tailTrack;
+    private volatile Consumer<List<WayPoint>> wayPointListener;
+
+    private volatile int trackPoints, wayPoints;
+    /*
+     * Guards the executor; poll() waits for the event dispatch thread, so
+     * close() must not wait for poll() to finish.
+     */
+    private final Object scheduleLock = new Object();
+    private ScheduledExecutorService executor;
+
+    /**
+     * Creates a follower continuing an import.
+     *
+     * @param reader
+     *            The reader, which has imported the file.
+     * @param ctx
+     *            The context of the import; must not be reset while the
+     *            file is followed.
+     * @param gpxData
+     *            The imported data, which receives the new points.
+     */
+    public ColumbusCSVFollower(ColumbusCSVReader reader, ColumbusImportContext ctx, GpxData gpxData) {
+        if (ctx.getFile() == null || ctx.getImportSummary() == null) {
+            throw new IllegalArgumentException("Import has not been completed");
+        }
+        this.reader = reader;
+        this.ctx = ctx;
+        this.gpxData = gpxData;
+        this.file = ctx.getFile();
+        this.segmenter = ctx.getSegmenter();
+        this.statistics = ctx.getImportSummary().getStatistics();
+        this.offset = ctx.getEndOffset();
+        this.records = ctx.getImportSummary().getTrackPoints() + ctx.getImportSummary().getWayPoints();
+        this.lastTrackPoint = ctx.getLastTrackPoint();
+    }
+
+    /**
+     * Starts polling the file in a background thread.
+     *
+     * @param interval
+     *            The poll interval in milliseconds.
+     */
+    public void start(long interval) {
+        synchronized (scheduleLock) {
+            if (executor != null) {
+                return;
+            }
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ColumbusCSV-follow-" + file.getName());
+                t.setDaemon(true);
+                return t;
+            });
+            executor.scheduleWithFixedDelay(() -> {
+                try {
+                    poll();
+                } catch (IOException ex) {
+                    if (!Thread.currentThread().isInterrupted()) {
+                        // the device may be unplugged for a moment; try again later
+                        Logging.warn("Cannot read " + file + ": " + ex);
+                    }
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        Logging.info("Following " + file + " from offset " + offset);
+    }
+
+    /**
+     * Stops polling the file. The points added so far are kept.
+     */
+    @Override
+    public void close() {
+        synchronized (scheduleLock) {
+            if (executor == null) {
+                return;
+            }
+            executor.shutdownNow();
+            executor = null;
+        }
+        Logging.info(String.format("Stopped following %s: %d track points, %d way points added", file,
+            trackPoints, wayPoints));
+    }
+
+    /**
+     * Imports the lines appended since the last poll. Incomplete lines are
+     * left for the next poll.
+     *
+     * @return The number of new points.
+     * @throws IOException
+     */
+    public synchronized int poll() throws IOException {
+        long length = file.length();
+        if (length == offset) {
+            return 0;
+        }
+        if (length < offset) {
+            Logging.info(file + " has been truncated; reading it again");
+            offset = 0;
+            records = 0;
+            restart = true;
+        }
+
+        ColumbusCSVChunk chunk;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long end = findLastLineEnd(channel, offset, channel.size());
+            if (end <= offset) {
+                return 0;
+            }
+            chunk = new ColumbusCSVChunk(offset, end);
+            chunk.recordOffset = records;
+            // A broken line must not stop following the file; skip it only
+            chunk.skipLineErrors = true;
+            ColumbusCSVProgress progress = new ColumbusCSVProgress(NullProgressMonitor.INSTANCE, 2 * (end - offset));
+            ColumbusCSVReader.parseChunk(channel, chunk, progress);
+            if (chunk.readError != null) {
+                throw chunk.readError;
+            }
+            offset = end;
+            records += chunk.store.size();
+            if (chunk.lineError != null) {
+                Logging.warn(String.format("Skipped %d line(s) of %s appended after byte %d, the first is line %d: %s",
+                    chunk.skippedLines, file, chunk.start, chunk.errorLine, chunk.lineError));
+            }
+            if (hasUnknownVoxFile(chunk.store)) {
+                // the audio has been recorded after the directory was listed
+                ctx.refreshVoxIndex();
+            }
+            reader.createWayPoints(ctx, chunk, progress);
+        }
+        ctx.merge(chunk);
+        return append(chunk);
+    }
+
+    /**
+     * Sets the listener, which receives the way points added by a poll. The
+     * listener is called on the event dispatch thread (or the polling
+     * thread, if running headless) after the way points have been added to
+     * the data.
+     *
+     * @param listener
+     *            The listener or null.
+     */
+    public void setWayPointListener(Consumer<List<WayPoint>> listener) {
+        wayPointListener = listener;
+    }
+
+    /**
+     * Gets the number of bytes imported so far.
+     *
+     * @return
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Gets the number of track points added since the import.
+     *
+     * @return
+     */
+    public int getTrackPoints() {
+        return trackPoints;
+    }
+
+    /**
+     * Gets the number of way points added since the import.
+     *
+     * @return
+     */
+    public int getWayPoints() {
+        return wayPoints;
+    }
+
+    /**
+     * Checks, if a record refers to an audio file missing in the vox index.
+     *
+     * @param store
+     *            The new records.
+     * @return true, if the directory has to be listed again.
+     */
+    private boolean hasUnknownVoxFile(ColumbusTrackStore store) {
+        ColumbusVoxIndex voxIndex = ctx.getVoxIndex();
+        for (String voxName : store.getVoxFiles().values()) {
+            if (voxIndex.getFile(voxName + ".wav") == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Splits the new points into segments and adds them to the data.
+     *
+     * @param chunk
+     *            The parsed lines.
+     * @return The number of new points.
+     * @throws IOException
+     */
+    private int append(ColumbusCSVChunk chunk) throws IOException {
+        List<WayPoint> newWpts = new ArrayList<>();
+        int n = chunk.wayPoints.size();
+        for (int k = 0; k < n; k++) {
+            WayPoint wpt = chunk.wayPoints.get(k);
+            boolean isTrackPoint = ColumbusCSVReader.TRACK_TYPE.equals(wpt.attr.remove(ColumbusCSVReader.TYPE_TAG));
+            boolean segmentStart = segmenter != null
+                && segmenter.isSegmentStart(chunk.store, chunk.from + k, isTrackPoint);
+            if (!isTrackPoint) {
+                newWpts.add(wpt);
+                continue;
+            }
+            segmentStart |= restart;
+            restart = false;
+            statistics.add(chunk.store, chunk.from + k, segmentStart);
+            if (segmentStart || tailSegments.isEmpty()) {
+                List<WayPoint> segment = new ArrayList<>();
+                if (!segmentStart && lastTrackPoint != null) {
+                    // connect the tail to the preceding track
+                    segment.add(lastTrackPoint);
+                }
+                tailSegments.add(segment);
+            }
+            ((List<WayPoint>) tailSegments.get(tailSegments.size() - 1)).add(wpt);
+            tailPoints++;
+        }
+        if (n == 0) {
+            return 0;
+        }
+
+        int newTrackPoints = n - newWpts.size();
+        boolean trackChanged = newTrackPoints > 0;
+        runOnEdt(() -> apply(newWpts, trackChanged));
+        trackPoints += newTrackPoints;
+        wayPoints += newWpts.size();
+
+        if (tailPoints >= MAX_TAIL_POINTS) {
+            // keep the track shown and start a new tail
+            List<WayPoint> segment = (List<WayPoint>) tailSegments.get(tailSegments.size() - 1);
+            lastTrackPoint = segment.get(segment.size() - 1);
+            tailSegments = new ArrayList<>();
+            tailPoints = 0;
+            tailTrack = null;
+        }
+        return n;
+    }
+
+    /**
+     * Adds the new way points and replaces the tail track.
+     *
+     * @param newWpts
+     *            The new way points.
+     * @param trackChanged
+     *            true, if the tail track has new points.
+     */
+    private void apply(List<WayPoint> newWpts, boolean trackChanged) {
+        gpxData.beginUpdate();
+        try {
+            for (WayPoint wpt : newWpts) {
+                gpxData.addWaypoint(wpt);
+            }
+            if (trackChanged) {
+                if (tailTrack != null) {
+                    gpxData.removeTrack(tailTrack);
+                }
+                tailTrack = new GpxTrack(tailSegments, Collections.emptyMap());
+                gpxData.addTrack(tailTrack);
+            }
+        } finally {
+            gpxData.endUpdate();
+        }
+        Consumer<List<WayPoint>> listener = wayPointListener;
+        if (listener != null && !newWpts.isEmpty()) {
+            listener.accept(newWpts);
+        }
+    }
+
+    /**
+     * Runs a change of the data on the event dispatch thread, which paints
+     * the layer.
+     *
+     * @param change
+     *            The change.
+     * @throws IOException
+     *             if the change has been interrupted or has failed.
+     */
+    private static void runOnEdt(Runnable change) throws IOException {
+        if (GraphicsEnvironment.isHeadless() || SwingUtilities.isEventDispatchThread()) {
+            change.run();
+            return;
+        }
+        try {
+            SwingUtilities.invokeAndWait(change);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (InvocationTargetException ex) {
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    /**
+     * Searches backwards for the end of the last complete line.
+     *
+     * @param channel
+     *            The channel of the file.
+     * @param offset
+     *            The start of the range to search.
+     * @param size
+     *            The end of the range to search.
+     * @return The position after the last line feed or <tt>offset</tt>, if
+     *         the range contains no line feed.
+     * @throws IOException
+     */
+    static long findLastLineEnd(FileChannel channel, long offset, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(SCAN_SIZE);
+        long pos = size;
+        while (pos > offset) {
+            int len = (int) Math.min(SCAN_SIZE, pos - offset);
+            buf.clear().limit(len);
+            long from = pos - len;
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, from + buf.position()) < 0) {
+                    return offset; // file has been truncated meanwhile
+                }
+            }
+            for (int i = len - 1; i >= 0; i--) {
+                if (buf.get(i) == '\n') {
+                    return from + i + 1;
+                }
+            }
+            pos = from;
+        }
+        return offset;
+    }
+}
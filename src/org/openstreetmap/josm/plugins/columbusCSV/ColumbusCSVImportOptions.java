@@ -0,0 +1,348 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+/**
+ * Immutable snapshot of the options of a single import. The reader takes the
+ * options once at the start of an import instead of looking up the
+ * preferences for each record, so options can also be set per import (e.g.
+ * for headless imports) without changing the global preferences:
+ *
+ * <pre>
+ * ColumbusCSVImportOptions options = ColumbusCSVImportOptions.fromPreferences()
+ *     .withShowSummary(false).withWarnMissingAudio(false);
+ * </pre>
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public final class ColumbusCSVImportOptions {
+    private boolean ignoreDOP;
+    private boolean warnMissingAudio;
+    private boolean warnConversion;
+    private boolean showSummary;
+    private boolean parallelImport;
+    private boolean useCache;
+    private boolean splitTracks;
+    private int segmentTimeGap;
+    private int segmentDistance;
+    private ColumbusTrackSimplifier.Method simplifyMethod;
+    private double simplifyMaxError;
+    private int simplifyMaxPoints;
+    private boolean followFile;
+
+    private ColumbusCSVImportOptions() {
+    }
+
+    private ColumbusCSVImportOptions(ColumbusCSVImportOptions other) {
+        this.ignoreDOP = other.ignoreDOP;
+        this.warnMissingAudio = other.warnMissingAudio;
+        this.warnConversion = other.warnConversion;
+        this.showSummary = other.showSummary;
+        this.parallelImport = other.parallelImport;
+        this.useCache = other.useCache;
+        this.splitTracks = other.splitTracks;
+        this.segmentTimeGap = other.segmentTimeGap;
+        this.segmentDistance = other.segmentDistance;
+        this.simplifyMethod = other.simplifyMethod;
+        this.simplifyMaxError = other.simplifyMaxError;
+        this.simplifyMaxPoints = other.simplifyMaxPoints;
+        this.followFile = other.followFile;
+    }
+
+    /**
+     * Creates the options from the current preferences.
+     *
+     * @return
+     */
+    public static ColumbusCSVImportOptions fromPreferences() {
+        ColumbusCSVImportOptions options = new ColumbusCSVImportOptions();
+        options.ignoreDOP = ColumbusCSVPreferences.ignoreDOP();
+        options.warnMissingAudio = ColumbusCSVPreferences.warnMissingAudio();
+        options.warnConversion = ColumbusCSVPreferences.warnConversion();
+        options.showSummary = ColumbusCSVPreferences.showSummary();
+        options.parallelImport = ColumbusCSVPreferences.parallelImport();
+        options.useCache = ColumbusCSVPreferences.useCache();
+        options.splitTracks = ColumbusCSVPreferences.splitTracks();
+        options.segmentTimeGap = ColumbusCSVPreferences.segmentTimeGap();
+        options.segmentDistance = ColumbusCSVPreferences.segmentDistance();
+        options.simplifyMethod = ColumbusCSVPreferences.simplifyMethod();
+        options.simplifyMaxError = ColumbusCSVPreferences.simplifyMaxError();
+        options.simplifyMaxPoints = ColumbusCSVPreferences.simplifyMaxPoints();
+        options.followFile = ColumbusCSVPreferences.followFile();
+        return options;
+    }
+
+    /**
+     * Creates the options with the default values of the preferences,
+     * without accessing the preferences. Use this when running without JOSM,
+     * e.g. in {@link ColumbusCSVBatchConverter}.
+     *
+     * @return
+     */
+    public static ColumbusCSVImportOptions defaults() {
+        ColumbusCSVImportOptions options = new ColumbusCSVImportOptions();
+        options.ignoreDOP = ColumbusCSVPreferences.DEFAULT_IGNORE_VDOP;
+        options.warnMissingAudio = ColumbusCSVPreferences.DEFAULT_WARN_MISSING_AUDIO;
+        options.warnConversion = ColumbusCSVPreferences.DEFAULT_WARN_CONVERSION_ERRORS;
+        options.showSummary = ColumbusCSVPreferences.DEFAULT_SHOW_SUMMARY;
+        options.parallelImport = ColumbusCSVPreferences.DEFAULT_PARALLEL_IMPORT;
+        options.useCache = ColumbusCSVPreferences.DEFAULT_USE_CACHE;
+        options.splitTracks = ColumbusCSVPreferences.DEFAULT_SPLIT_TRACKS;
+        options.segmentTimeGap = ColumbusCSVPreferences.DEFAULT_SEGMENT_TIME_GAP;
+        options.segmentDistance = ColumbusCSVPreferences.DEFAULT_SEGMENT_DISTANCE;
+        options.simplifyMethod = ColumbusCSVPreferences.DEFAULT_SIMPLIFY_METHOD;
+        options.simplifyMaxError = ColumbusCSVPreferences.DEFAULT_SIMPLIFY_MAX_ERROR;
+        options.simplifyMaxPoints = ColumbusCSVPreferences.DEFAULT_SIMPLIFY_MAX_POINTS;
+        options.followFile = ColumbusCSVPreferences.DEFAULT_FOLLOW_FILE;
+        return options;
+    }
+
+    /**
+     * @see ColumbusCSVPreferences#ignoreDOP()
+     * @return
+     */
+    public boolean ignoreDOP() {
+        return ignoreDOP;
+    }
+
+    /**
+     * @see ColumbusCSVPreferences#warnMissingAudio()
+     * @return
+     */
+    public boolean warnMissingAudio() {
+        return warnMissingAudio;
+    }
+
+    /**
+     * @see ColumbusCSVPreferences#warnConversion()
+     * @return
+     */
+    public boolean warnConversion() {
+        return warnConversion;
+    }
+
+    /**
+     * @see ColumbusCSVPreferences#showSummary()
+     * @return
+     */
+    public boolean showSummary() {
+        return showSummary;
+    }
+
+    /**
+     * @see ColumbusCSVPreferences#parallelImport()
+     * @return
+     */
+    public boolean parallelImport() {
+        return parallelImport;
+    }
+
+    /**
+     * @see ColumbusCSVPreferences#useCache()
+     * @return
+     */
+    public boolean useCache() {
+        return useCache;
+    }
+
+    /**
+     * @see ColumbusCSVPreferences#splitTracks()
+     * @return
+     */
+    public boolean splitTracks() {
+        return splitTracks;
+    }
+
+    /**
+     * @see ColumbusCSVPreferences#segmentTimeGap()
+     * @return
+     */
+    public int segmentTimeGap() {
+        return segmentTimeGap;
+    }
+
+    /**
+     * @see ColumbusCSVPreferences#segmentDistance()
+     * @return
+     */
+    public int segmentDistance() {
+        return segmentDistance;
+    }
+
+    /**
+     * @see ColumbusCSVPreferences#simplifyMethod()
+     * @return
+     */
+    public ColumbusTrackSimplifier.Method simplifyMethod() {
+        return simplifyMethod;
+    }
+
+    /**
+     * @see ColumbusCSVPreferences#simplifyMaxError()
+     * @return
+     */
+    public double simplifyMaxError() {
+        return simplifyMaxError;
+    }
+
+    /**
+     * @see ColumbusCSVPreferences#simplifyMaxPoints()
+     * @return
+     */
+    public int simplifyMaxPoints() {
+        return simplifyMaxPoints;
+    }
+
+    /**
+     * @see ColumbusCSVPreferences#followFile()
+     * @return
+     */
+    public boolean followFile() {
+        return followFile;
+    }
+
+    /**
+     * Gets a copy of the options with the given value.
+     *
+     * @param ignoreDOP
+     *            Ignore DOP and fix mode of extended mode files.
+     * @return
+     */
+    public ColumbusCSVImportOptions withIgnoreDOP(boolean ignoreDOP) {
+        ColumbusCSVImportOptions options = new ColumbusCSVImportOptions(this);
+        options.ignoreDOP = ignoreDOP;
+        return options;
+    }
+
+    /**
+     * Gets a copy of the options with the given value.
+     *
+     * @param warnMissingAudio
+     *            List the missing audio files in the warnings shown after
+     *            the import.
+     * @return
+     */
+    public ColumbusCSVImportOptions withWarnMissingAudio(boolean warnMissingAudio) {
+        ColumbusCSVImportOptions options = new ColumbusCSVImportOptions(this);
+        options.warnMissingAudio = warnMissingAudio;
+        return options;
+    }
+
+    /**
+     * Gets a copy of the options with the given value.
+     *
+     * @param warnConversion
+     *            List the records with invalid date or DOP values in the
+     *            warnings shown after the import.
+     * @return
+     */
+    public ColumbusCSVImportOptions withWarnConversion(boolean warnConversion) {
+        ColumbusCSVImportOptions options = new ColumbusCSVImportOptions(this);
+        options.warnConversion = warnConversion;
+        return options;
+    }
+
+    /**
+     * Gets a copy of the options with the given value.
+     *
+     * @param showSummary
+     *            Show a summary after the import.
+     * @return
+     */
+    public ColumbusCSVImportOptions withShowSummary(boolean showSummary) {
+        ColumbusCSVImportOptions options = new ColumbusCSVImportOptions(this);
+        options.showSummary = showSummary;
+        return options;
+    }
+
+    /**
+     * Gets a copy of the options with the given value.
+     *
+     * @param parallelImport
+     *            Parse large files in parallel.
+     * @return
+     */
+    public ColumbusCSVImportOptions withParallelImport(boolean parallelImport) {
+        ColumbusCSVImportOptions options = new ColumbusCSVImportOptions(this);
+        options.parallelImport = parallelImport;
+        return options;
+    }
+
+    /**
+     * Gets a copy of the options with the given value.
+     *
+     * @param useCache
+     *            Read and write the cache of parsed files.
+     * @return
+     */
+    public ColumbusCSVImportOptions withUseCache(boolean useCache) {
+        ColumbusCSVImportOptions options = new ColumbusCSVImportOptions(this);
+        options.useCache = useCache;
+        return options;
+    }
+
+    /**
+     * Gets a copy of the options with the given segmentation.
+     *
+     * @param splitTracks
+     *            Split the track into segments at gaps.
+     * @param segmentTimeGap
+     *            Min. time gap in seconds starting a new segment; 0 disables.
+     * @param segmentDistance
+     *            Min. distance in meters per second between two points
+     *            starting a new segment; 0 disables.
+     * @return
+     */
+    public ColumbusCSVImportOptions withSegmentation(boolean splitTracks, int segmentTimeGap, int segmentDistance) {
+        ColumbusCSVImportOptions options = new ColumbusCSVImportOptions(this);
+        options.splitTracks = splitTracks;
+        options.segmentTimeGap = segmentTimeGap;
+        options.segmentDistance = segmentDistance;
+        return options;
+    }
+
+    /**
+     * Gets a copy of the options with the given simplification.
+     *
+     * @param simplifyMethod
+     *            The simplification algorithm.
+     * @param simplifyMaxError
+     *            The max. error in meters; 0 to limit the number of points
+     *            only.
+     * @param simplifyMaxPoints
+     *            The max. number of track points; 0 for no limit.
+     * @return
+     */
+    public ColumbusCSVImportOptions withSimplification(ColumbusTrackSimplifier.Method simplifyMethod,
+        double simplifyMaxError, int simplifyMaxPoints) {
+        ColumbusCSVImportOptions options = new ColumbusCSVImportOptions(this);
+        options.simplifyMethod = simplifyMethod;
+        options.simplifyMaxError = simplifyMaxError;
+        options.simplifyMaxPoints = simplifyMaxPoints;
+        return options;
+    }
+
+    /**
+     * Gets a copy of the options with the given value.
+     *
+     * @param followFile
+     *            The file is followed after the import; a last line without
+     *            line feed is left to the {@link ColumbusCSVFollower}.
+     * @return
+     */
+    public ColumbusCSVImportOptions withFollowFile(boolean followFile) {
+        ColumbusCSVImportOptions options = new ColumbusCSVImportOptions(this);
+        options.followFile = followFile;
+        return options;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumbusCSVImportOptions [ignoreDOP=" + ignoreDOP + ", warnMissingAudio=" + warnMissingAudio
+            + ", warnConversion=" + warnConversion + ", showSummary=" + showSummary + ", parallelImport="
+            + parallelImport + ", useCache=" + useCache + ", splitTracks=" + splitTracks + ", segmentTimeGap="
+            + segmentTimeGap + ", segmentDistance=" + segmentDistance + ", simplifyMethod=" + simplifyMethod
+            + ", simplifyMaxError=" + simplifyMaxError + ", simplifyMaxPoints=" + simplifyMaxPoints
+            + ", followFile=" + followFile + "]";
+    }
+}
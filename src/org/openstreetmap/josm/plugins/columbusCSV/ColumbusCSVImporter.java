@@ -5,14 +5,22 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collection;
 
 import org.openstreetmap.josm.actions.AutoScaleAction;
 import org.openstreetmap.josm.actions.AutoScaleAction.AutoScaleMode;
 import org.openstreetmap.josm.actions.ExtensionFileFilter;
 import org.openstreetmap.josm.data.gpx.GpxData;
+import org.openstreetmap.josm.data.gpx.WayPoint;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.io.importexport.FileImporter;
 import org.openstreetmap.josm.gui.layer.GpxLayer;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerAddEvent;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerChangeListener;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerOrderChangeEvent;
+import org.openstreetmap.josm.gui.layer.LayerManager.LayerRemoveEvent;
+import org.openstreetmap.josm.gui.layer.markerlayer.Marker;
 import org.openstreetmap.josm.gui.layer.markerlayer.MarkerLayer;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
@@ -29,6 +37,10 @@ public class ColumbusCSVImporter extends FileImporter {
     public static final String COLUMBUS_FILE_EXT = "csv";
     public static final String COLUMBUS_FILE_EXT_DOT = "." + COLUMBUS_FILE_EXT;
 
+    /* Reading the file takes most of the time; adding the layers one tick each */
+    private static final int READ_TICKS = 18;
+    private static final int IMPORT_TICKS = READ_TICKS + 2;
+
     /**
      * Constructs a new {@code ColumbusCSVImporter}.
      */
@@ -58,37 +70,35 @@ public class ColumbusCSVImporter extends FileImporter {
         }
     
         progressMonitor.beginTask(String.format(
-            tr("Importing CSV file ''%s''..."), file.getName(), 4));
-        progressMonitor.setTicksCount(1);
+            tr("Importing CSV file ''%s''..."), file.getName()), IMPORT_TICKS);
     
         if (fn.toLowerCase().endsWith(COLUMBUS_FILE_EXT_DOT)) {
             try {
                 ColumbusCSVReader r = new ColumbusCSVReader();
         
                 // transform CSV into GPX
-                GpxData gpxData = r.transformColumbusCSV(fn);
+                GpxData gpxData = r.transformColumbusCSV(fn,
+                    progressMonitor.createSubTaskMonitor(READ_TICKS, false));
                 assert gpxData != null;
-                progressMonitor.setTicksCount(1);
         
                 r.dropBufferLists();
         
-                progressMonitor.setTicksCount(2);
-        
                 GpxLayer gpxLayer = new GpxLayer(gpxData, file.getName());
                 assert gpxLayer != null;
         
                 // add layer to show way points
                 MainApplication.getLayerManager().addLayer(gpxLayer);
         
-                progressMonitor.setTicksCount(3);
+                progressMonitor.worked(1);
         
                 // ... and scale view appropriately - if wished by user
                 if (ColumbusCSVPreferences.zoomAfterImport()) {
                     AutoScaleAction action = new AutoScaleAction(AutoScaleMode.DATA);
                     action.autoScale();
                 }
-                progressMonitor.setTicksCount(4);
+                progressMonitor.worked(1);
         
+                MarkerLayer markerLayer = null;
                 if (Config.getPref().getBoolean("marker.makeautomarkers", true)) {
                     try {
                         MarkerLayer ml = new MarkerLayer(gpxData,
@@ -101,6 +111,7 @@ public class ColumbusCSVImporter extends FileImporter {
                         Logging.info("Data size: " + ml.data.size());
             
                         MainApplication.getLayerManager().addLayer(ml);
+                        markerLayer = ml;
                         if (ml.data.isEmpty()) {
                         	Logging.warn("File contains no markers.");
                         }
@@ -110,6 +121,12 @@ public class ColumbusCSVImporter extends FileImporter {
                 } else {
                 	Logging.warn("Option 'marker.makeautomarkers' is not set; audio marker layer is not created.");
                 }
+                if (r.getContext().getOptions().followFile()) {
+                    follow(r, gpxData, gpxLayer, markerLayer);
+                }
+            } catch (InterruptedIOException e) {
+                // cancelled by user; nothing has been added yet
+                Logging.info("Import of " + fn + " cancelled");
             } catch (Exception e) {
                 // catch and forward exception
             	Logging.error(e);
@@ -123,4 +140,63 @@ public class ColumbusCSVImporter extends FileImporter {
                         file.getName(), COLUMBUS_FILE_EXT)));
         }
     }
+
+    /**
+     * Keeps importing the records appended to the file until the layer is
+     * removed.
+     * 
+     * @param r
+     *            The reader, which has imported the file.
+     * @param gpxData
+     *            The imported data.
+     * @param gpxLayer
+     *            The layer showing the data.
+     * @param markerLayer
+     *            The layer showing the markers of the data or null.
+     */
+    private static void follow(ColumbusCSVReader r, GpxData gpxData, GpxLayer gpxLayer,
+        MarkerLayer markerLayer) {
+        ColumbusCSVFollower follower = new ColumbusCSVFollower(r, r.getContext(), gpxData);
+        if (markerLayer != null) {
+            follower.setWayPointListener(wpts -> addMarkers(markerLayer, gpxData.storageFile, wpts));
+        }
+        MainApplication.getLayerManager().addLayerChangeListener(new LayerChangeListener() {
+            @Override
+            public void layerRemoving(LayerRemoveEvent e) {
+                if (e.getRemovedLayer() == gpxLayer) {
+                    follower.close();
+                    MainApplication.getLayerManager().removeLayerChangeListener(this);
+                }
+            }
+
+            @Override
+            public void layerAdded(LayerAddEvent e) {
+                // nothing to do
+            }
+
+            @Override
+            public void layerOrderChanged(LayerOrderChangeEvent e) {
+                // nothing to do
+            }
+        });
+        follower.start(ColumbusCSVPreferences.followInterval());
+    }
+
+    /**
+     * Adds the markers of way points appended to a followed file.
+     *
+     * @param ml
+     *            The marker layer of the import.
+     * @param file
+     *            The imported file; links are relative to it.
+     * @param wpts
+     *            The new way points.
+     */
+    private static void addMarkers(MarkerLayer ml, File file, Collection<WayPoint> wpts) {
+        for (WayPoint wpt : wpts) {
+            // each vox file contains a single recording, so the way point is at its start
+            ml.data.addAll(Marker.createMarkers(wpt, file, ml, wpt.getTimeInMillis() / 1000.0, 0));
+        }
+        ml.invalidate();
+    }
 }
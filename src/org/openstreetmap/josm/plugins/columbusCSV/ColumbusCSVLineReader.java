@@ -0,0 +1,223 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Walks the lines of a Columbus CSV file on byte level. Unlike
+ * <code>BufferedReader.readLine()</code> no characters are decoded and no
+ * string is created per line; the current line is just a range within
+ * {@link #getBuffer()} which can be passed to the
+ * {@link ColumbusCSVTokenizer}.
+ *
+ * The file is memory-mapped in windows of {@link #DEFAULT_WINDOW_SIZE} bytes,
+ * so files of any size can be read although a single mapping is limited to
+ * 2 GB. A line crossing the end of a window is handled by mapping the next
+ * window at the start of that line. Small files or ranges are read into a
+ * heap buffer instead, since mapping is not worth the effort for them.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+class ColumbusCSVLineReader implements Closeable {
+    /**
+     * The size of the mapped windows.
+     */
+    static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+    /* Ranges smaller than this are read instead of mapped */
+    private static final int MIN_MAP_SIZE = 256 * 1024;
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final long start;
+    private long end;
+    private int windowSize;
+
+    private ByteBuffer window;
+    private ByteBuffer heapBuffer;
+    /* File offset of the first byte of the window */
+    private long windowOffset;
+    /* Start of the next line */
+    private int pos;
+    /* Position to continue the search for the next line break */
+    private int scan;
+
+    private int lineStart, lineEnd;
+
+    /**
+     * Creates a new line reader for a whole file.
+     *
+     * @param file
+     *            The file to read.
+     * @throws IOException
+     */
+    ColumbusCSVLineReader(File file) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.READ), 0, Long.MAX_VALUE, true);
+    }
+
+    /**
+     * Creates a new line reader for a part of a file. The range should start
+     * at the beginning of a line; the last line ends at the end of the range.
+     *
+     * @param channel
+     *            The channel to read from. The channel is not closed by this
+     *            reader.
+     * @param start
+     *            The file offset to start at.
+     * @param end
+     *            The file offset to stop at; values beyond the file size are
+     *            truncated.
+     * @throws IOException
+     */
+    ColumbusCSVLineReader(FileChannel channel, long start, long end) throws IOException {
+        this(channel, start, end, false);
+    }
+
+    private ColumbusCSVLineReader(FileChannel channel, long start, long end, boolean ownsChannel) throws IOException {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.start = start;
+        this.end = Math.max(start, Math.min(end, channel.size()));
+        this.windowSize = DEFAULT_WINDOW_SIZE;
+    }
+
+    /**
+     * Advances to the next line.
+     *
+     * @return True, if a line is available; false, if the end of the range
+     *         has been reached.
+     * @throws IOException
+     */
+    boolean nextLine() throws IOException {
+        while (true) {
+            if (window != null) {
+                int limit = window.limit();
+                for (int i = scan; i < limit; i++) {
+                    if (window.get(i) == '\n') {
+                        setLine(pos, i);
+                        pos = i + 1;
+                        scan = pos;
+                        return true;
+                    }
+                }
+                scan = limit;
+
+                if (windowOffset + limit >= end) { // last window
+                    if (pos < limit) { // last line without line break
+                        setLine(pos, limit);
+                        pos = limit;
+                        return true;
+                    }
+                    return false;
+                }
+            }
+            nextWindow();
+        }
+    }
+
+    private void setLine(int start, int end) {
+        if (end > start && window.get(end - 1) == '\r') {
+            end--;
+        }
+        lineStart = start;
+        lineEnd = end;
+    }
+
+    /**
+     * Maps (or reads) the next window, starting at the pending line.
+     */
+    private void nextWindow() throws IOException {
+        long offset = start;
+        if (window != null) {
+            if (pos == 0) { // line is longer than the whole window
+                windowSize = (int) Math.min(Integer.MAX_VALUE, 2L * windowSize);
+            }
+            offset = windowOffset + pos;
+            scan -= pos;
+        }
+        int len = (int) Math.min(windowSize, end - offset);
+
+        if (len < MIN_MAP_SIZE) {
+            if (heapBuffer == null || heapBuffer.capacity() < len) {
+                heapBuffer = ByteBuffer.allocate(Math.max(len, 1024));
+            }
+            heapBuffer.clear();
+            heapBuffer.limit(len);
+            while (heapBuffer.hasRemaining()) {
+                if (channel.read(heapBuffer, offset + heapBuffer.position()) < 0) {
+                    // file has been truncated meanwhile
+                    end = offset + heapBuffer.position();
+                    break;
+                }
+            }
+            heapBuffer.flip();
+            window = heapBuffer;
+        } else {
+            window = channel.map(MapMode.READ_ONLY, offset, len);
+        }
+        windowOffset = offset;
+        pos = 0;
+    }
+
+    /**
+     * Gets the buffer containing the current line. The buffer may change
+     * with every call of {@link #nextLine()}.
+     *
+     * @return
+     */
+    ByteBuffer getBuffer() {
+        return window;
+    }
+
+    /**
+     * Gets the absolute offset of the current line within the buffer.
+     *
+     * @return
+     */
+    int getLineStart() {
+        return lineStart;
+    }
+
+    /**
+     * Gets the absolute offset right behind the current line (without line
+     * break) within the buffer.
+     *
+     * @return
+     */
+    int getLineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * Gets the file offset of the current line.
+     *
+     * @return
+     */
+    long getLineOffset() {
+        return windowOffset + lineStart;
+    }
+
+    /**
+     * Gets the file offset right behind the current line including its line
+     * break, i. e. the number of bytes consumed so far.
+     *
+     * @return
+     */
+    long getPosition() {
+        return window == null ? start : windowOffset + pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+}
@@ -3,12 +3,18 @@ package org.openstreetmap.josm.plugins.columbusCSV;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
-import javax.swing.ButtonGroup;
+import java.awt.GridBagLayout;
+
+import javax.swing.BorderFactory;
+import javax.swing.Box;
 import javax.swing.JCheckBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
 
 import org.openstreetmap.josm.gui.preferences.DefaultTabPreferenceSetting;
 import org.openstreetmap.josm.gui.preferences.PreferenceTabbedPane;
 import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.GBC;
 
 /**
  * Implements the preferences dialog for this plugin.
@@ -30,6 +36,50 @@ public class ColumbusCSVPreferences extends DefaultTabPreferenceSetting {
      * this setting has no effect.
      */
     public static final String IGNORE_VDOP = PREFIX + "import.ignoreVDOP";
+    /**
+     * Parse large files in parallel chunks.
+     */
+    public static final String PARALLEL_IMPORT = PREFIX + "import.parallel";
+    /**
+     * Keep parsed files in a binary cache.
+     */
+    public static final String USE_CACHE = PREFIX + "import.useCache";
+    /**
+     * Maximum size of the binary cache in MB.
+     */
+    public static final String CACHE_MAX_SIZE = PREFIX + "cache.maxSize";
+    /**
+     * Split the track into segments at gaps.
+     */
+    public static final String SPLIT_TRACKS = PREFIX + "import.splitTracks";
+    /**
+     * Minimum time gap in seconds between two track points starting a new segment.
+     */
+    public static final String SEGMENT_TIME_GAP = PREFIX + "segment.timeGap";
+    /**
+     * Minimum distance in meters per second between two track points starting a new segment.
+     */
+    public static final String SEGMENT_DISTANCE = PREFIX + "segment.distance";
+    /**
+     * Algorithm for simplifying the track (see {@link ColumbusTrackSimplifier.Method}).
+     */
+    public static final String SIMPLIFY_METHOD = PREFIX + "import.simplify";
+    /**
+     * Maximum error in meters of the simplified track.
+     */
+    public static final String SIMPLIFY_MAX_ERROR = PREFIX + "simplify.maxError";
+    /**
+     * Maximum number of points of the simplified track.
+     */
+    public static final String SIMPLIFY_MAX_POINTS = PREFIX + "simplify.maxPoints";
+    /**
+     * Follow the imported file and import appended records.
+     */
+    public static final String FOLLOW_FILE = PREFIX + "import.follow";
+    /**
+     * Interval in milliseconds for polling a followed file.
+     */
+    public static final String FOLLOW_INTERVAL = PREFIX + "follow.interval";
     /**
      * Issue warning on missing audio files.
      */
@@ -38,6 +88,26 @@ public class ColumbusCSVPreferences extends DefaultTabPreferenceSetting {
      * Issue warning on conversion errors.
      */
     public static final String WARN_CONVERSION_ERRORS = PREFIX + "warn.conversionErrors";
+
+    /*
+     * Default values of the settings above. ColumbusCSVImportOptions.defaults()
+     * uses them as well, so headless imports behave like a fresh installation.
+     */
+    static final boolean DEFAULT_SHOW_SUMMARY = true;
+    static final boolean DEFAULT_ZOOM_AFTER_IMPORT = true;
+    static final boolean DEFAULT_IGNORE_VDOP = false;
+    static final boolean DEFAULT_PARALLEL_IMPORT = true;
+    static final boolean DEFAULT_USE_CACHE = true;
+    static final int DEFAULT_CACHE_MAX_SIZE = 256;
+    static final boolean DEFAULT_SPLIT_TRACKS = true;
+    static final int DEFAULT_SEGMENT_TIME_GAP = 600;
+    static final int DEFAULT_SEGMENT_DISTANCE = 1000;
+    static final ColumbusTrackSimplifier.Method DEFAULT_SIMPLIFY_METHOD = ColumbusTrackSimplifier.Method.NONE;
+    static final double DEFAULT_SIMPLIFY_MAX_ERROR = 1.0;
+    static final int DEFAULT_SIMPLIFY_MAX_POINTS = 0;
+    static final boolean DEFAULT_FOLLOW_FILE = false;
+    static final boolean DEFAULT_WARN_MISSING_AUDIO = false;
+    static final boolean DEFAULT_WARN_CONVERSION_ERRORS = false;
     
     /**
      * Ui elements for each flag.
@@ -45,6 +115,10 @@ public class ColumbusCSVPreferences extends DefaultTabPreferenceSetting {
     private final JCheckBox colCSVShowSummary = new JCheckBox(tr("Show summary after import"));
     private final JCheckBox colCSVDontZoomAfterImport = new JCheckBox(tr("Do not zoom after import"));
     private final JCheckBox colCSVIgnoreVDOP = new JCheckBox(tr("Ignore hdop/vdop/pdop entries"));
+    private final JCheckBox colCSVParallelImport = new JCheckBox(tr("Use all processor cores to import large files"));
+    private final JCheckBox colCSVUseCache = new JCheckBox(tr("Cache imported files for faster re-import"));
+    private final JCheckBox colCSVSplitTracks = new JCheckBox(tr("Split track at time gaps, position jumps and restarts"));
+    private final JCheckBox colCSVFollowFile = new JCheckBox(tr("Keep importing records appended to the file (live logging)"));
     private final JCheckBox colCSVWarnMissingAudio = new JCheckBox(tr("Warn on missing audio files"));
     private final JCheckBox colCSVWarnConversionErrors = new JCheckBox(tr("Warn on conversion errors"));
     
@@ -52,7 +126,7 @@ public class ColumbusCSVPreferences extends DefaultTabPreferenceSetting {
      * Creates a new preferences instance.
      */
     public ColumbusCSVPreferences() {
-       super();
+       super("colcsvicon", tr("Columbus CSV"), tr("Settings for importing Columbus V-900 CSV files."));
     }
 
     /**
@@ -63,6 +137,10 @@ public class ColumbusCSVPreferences extends DefaultTabPreferenceSetting {
         Config.getPref().putBoolean(SHOW_SUMMARY, colCSVShowSummary.isSelected());
         Config.getPref().putBoolean(ZOOM_AFTER_IMPORT, colCSVDontZoomAfterImport.isSelected());
         Config.getPref().putBoolean(IGNORE_VDOP, colCSVIgnoreVDOP.isSelected());
+        Config.getPref().putBoolean(PARALLEL_IMPORT, colCSVParallelImport.isSelected());
+        Config.getPref().putBoolean(USE_CACHE, colCSVUseCache.isSelected());
+        Config.getPref().putBoolean(SPLIT_TRACKS, colCSVSplitTracks.isSelected());
+        Config.getPref().putBoolean(FOLLOW_FILE, colCSVFollowFile.isSelected());
         Config.getPref().putBoolean(WARN_CONVERSION_ERRORS, colCSVWarnConversionErrors.isSelected());
         Config.getPref().putBoolean(WARN_MISSING_AUDIO, colCSVWarnMissingAudio.isSelected());        
         return false;
@@ -73,7 +151,7 @@ public class ColumbusCSVPreferences extends DefaultTabPreferenceSetting {
      * @return <tt>true</tt> if a summary dialog is shown after import
      */
     public static boolean showSummary() {
-        return Config.getPref().getBoolean(SHOW_SUMMARY, true);
+        return Config.getPref().getBoolean(SHOW_SUMMARY, DEFAULT_SHOW_SUMMARY);
     }
     
     /**
@@ -81,7 +159,7 @@ public class ColumbusCSVPreferences extends DefaultTabPreferenceSetting {
      * @return <tt>true</tt> if the bounding box will not be scaled to the imported data
      */
     public static boolean zoomAfterImport() {
-        return Config.getPref().getBoolean(ZOOM_AFTER_IMPORT, true);
+        return Config.getPref().getBoolean(ZOOM_AFTER_IMPORT, DEFAULT_ZOOM_AFTER_IMPORT);
     }
     
     /**
@@ -91,25 +169,127 @@ public class ColumbusCSVPreferences extends DefaultTabPreferenceSetting {
      * @return <tt>true</tt> if all DOP values (hdop, vdop, pdop) are ignored
      */
     public static boolean ignoreDOP() {
-        return Config.getPref().getBoolean(IGNORE_VDOP, false);
+        return Config.getPref().getBoolean(IGNORE_VDOP, DEFAULT_IGNORE_VDOP);
     }
     
     /**
-     * If <tt>true</tt>, the plugin issues warnings when either date or position errors occurr. 
+     * If <tt>true</tt>, large files are split into chunks which are parsed in parallel.
      * Default is <tt>true</tt>.
+     * @return <tt>true</tt> if large files are parsed in parallel
+     */
+    public static boolean parallelImport() {
+        return Config.getPref().getBoolean(PARALLEL_IMPORT, DEFAULT_PARALLEL_IMPORT);
+    }
+    
+    /**
+     * If <tt>true</tt>, parsed files are kept in a binary cache, so that re-importing an unchanged
+     * file skips parsing. Default is <tt>true</tt>.
+     * @return <tt>true</tt> if parsed files are cached
+     */
+    public static boolean useCache() {
+        return Config.getPref().getBoolean(USE_CACHE, DEFAULT_USE_CACHE);
+    }
+    
+    /**
+     * Gets the maximum size of the binary cache in MB. Default is 256.
+     * @return the maximum cache size in MB
+     */
+    public static int cacheMaxSize() {
+        return Config.getPref().getInt(CACHE_MAX_SIZE, DEFAULT_CACHE_MAX_SIZE);
+    }
+    
+    /**
+     * If <tt>true</tt>, a new track segment is started whenever the time gap or distance between
+     * two track points exceeds the thresholds or the INDEX column restarts. Default is <tt>true</tt>.
+     * @return <tt>true</tt> if the track is split into segments
+     */
+    public static boolean splitTracks() {
+        return Config.getPref().getBoolean(SPLIT_TRACKS, DEFAULT_SPLIT_TRACKS);
+    }
+    
+    /**
+     * Gets the minimum time gap in seconds starting a new track segment. Default is 600 (10 min).
+     * @return the time gap in seconds; 0 disables splitting by time
+     */
+    public static int segmentTimeGap() {
+        return Config.getPref().getInt(SEGMENT_TIME_GAP, DEFAULT_SEGMENT_TIME_GAP);
+    }
+    
+    /**
+     * Gets the minimum distance in meters per second between two track points starting a
+     * new track segment, i.e. the max. plausible speed. Default is 1000 (3600 km/h), which
+     * splits at position jumps only, even if points are logged at long intervals.
+     * @return the distance in meters per second; 0 disables splitting by distance
+     */
+    public static int segmentDistance() {
+        return Config.getPref().getInt(SEGMENT_DISTANCE, DEFAULT_SEGMENT_DISTANCE);
+    }
+    
+    /**
+     * Gets the algorithm for simplifying the imported track. Default is
+     * {@link ColumbusTrackSimplifier.Method#NONE}.
+     * @return the simplification algorithm
+     */
+    public static ColumbusTrackSimplifier.Method simplifyMethod() {
+        String method = Config.getPref().get(SIMPLIFY_METHOD, DEFAULT_SIMPLIFY_METHOD.name());
+        try {
+            return ColumbusTrackSimplifier.Method.valueOf(method);
+        } catch (IllegalArgumentException e) {
+            return DEFAULT_SIMPLIFY_METHOD;
+        }
+    }
+    
+    /**
+     * Gets the maximum error in meters of the simplified track. Default is 1 m.
+     * @return the maximum error in meters; 0 to limit the number of points only
+     */
+    public static double simplifyMaxError() {
+        return Config.getPref().getDouble(SIMPLIFY_MAX_ERROR, DEFAULT_SIMPLIFY_MAX_ERROR);
+    }
+    
+    /**
+     * Gets the maximum number of points of the simplified track. Default is 0 (no limit).
+     * @return the maximum number of track points
+     */
+    public static int simplifyMaxPoints() {
+        return Config.getPref().getInt(SIMPLIFY_MAX_POINTS, DEFAULT_SIMPLIFY_MAX_POINTS);
+    }
+    
+    /**
+     * If <tt>true</tt>, the imported file is followed and records appended
+     * by the logger are added to the layer (see {@link ColumbusCSVFollower}).
+     * Default is <tt>false</tt>.
+     * @return <tt>true</tt> if the file is followed
+     */
+    public static boolean followFile() {
+        return Config.getPref().getBoolean(FOLLOW_FILE, DEFAULT_FOLLOW_FILE);
+    }
+    
+    /**
+     * Interval in milliseconds for polling a followed file. Default is
+     * {@link ColumbusCSVFollower#DEFAULT_INTERVAL}.
+     * @return the poll interval
+     */
+    public static int followInterval() {
+        return Config.getPref().getInt(FOLLOW_INTERVAL, ColumbusCSVFollower.DEFAULT_INTERVAL);
+    }
+    
+    /**
+     * If <tt>true</tt>, the plugin issues warnings when either date or position errors occurr. 
+     * Default is <tt>false</tt>.
      * @return <tt>true</tt> if the plugin issues warnings when either date or position errors occurr.
      */
     public static boolean warnConversion() {
-        return Config.getPref().getBoolean(WARN_CONVERSION_ERRORS, false);
+        return Config.getPref().getBoolean(WARN_CONVERSION_ERRORS, DEFAULT_WARN_CONVERSION_ERRORS);
     }
     
     /**
      * If <tt>true</tt>, the plugin issues a warning if a referenced audio file is missing. 
-     * Default is <tt>true</tt>.
+     * Default is <tt>false</tt>.
      * @return <tt>true</tt> if the plugin issues a warning when a referenced audio file is missing
      */
     public static boolean warnMissingAudio() {
-        return Config.getPref().getBoolean(WARN_MISSING_AUDIO, false);
+        return Config.getPref().getBoolean(WARN_MISSING_AUDIO, DEFAULT_WARN_MISSING_AUDIO);
     }
 
     /**
@@ -118,23 +298,35 @@ public class ColumbusCSVPreferences extends DefaultTabPreferenceSetting {
      */
     @Override
     public void addGui(PreferenceTabbedPane gui) {
+        JPanel panel = new JPanel(new GridBagLayout());
+        panel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
         // Import settings
-        ButtonGroup gpsImportGroup = new ButtonGroup();
-        gpsImportGroup.add(colCSVShowSummary);
-        gpsImportGroup.add(colCSVDontZoomAfterImport);
-        gpsImportGroup.add(colCSVIgnoreVDOP);
-      
+        panel.add(new JLabel(tr("Import")), GBC.eol());
+        JCheckBox[] importSettings = {colCSVShowSummary, colCSVDontZoomAfterImport, colCSVIgnoreVDOP,
+            colCSVParallelImport, colCSVUseCache, colCSVSplitTracks, colCSVFollowFile};
+        for (JCheckBox cb : importSettings) {
+            panel.add(cb, GBC.eol().insets(20, 0, 0, 0));
+        }
+
         // Warning settings
-        ButtonGroup gpsWarningsGroup = new ButtonGroup();
-        gpsWarningsGroup.add(colCSVWarnMissingAudio);
-        gpsWarningsGroup.add(colCSVWarnConversionErrors);
+        panel.add(new JLabel(tr("Warnings")), GBC.eol().insets(0, 10, 0, 0));
+        panel.add(colCSVWarnMissingAudio, GBC.eol().insets(20, 0, 0, 0));
+        panel.add(colCSVWarnConversionErrors, GBC.eol().insets(20, 0, 0, 0));
+        panel.add(Box.createVerticalGlue(), GBC.eol().fill(GBC.BOTH));
 
         // Apply settings
-        colCSVShowSummary.setSelected(Config.getPref().getBoolean(SHOW_SUMMARY, true));
-        colCSVDontZoomAfterImport.setSelected(Config.getPref().getBoolean(ZOOM_AFTER_IMPORT, true));
-        colCSVIgnoreVDOP.setSelected(Config.getPref().getBoolean(IGNORE_VDOP, false));
-        colCSVWarnConversionErrors.setSelected(Config.getPref().getBoolean(WARN_CONVERSION_ERRORS, true));
-        colCSVWarnMissingAudio.setSelected(Config.getPref().getBoolean(WARN_MISSING_AUDIO, true));
+        colCSVShowSummary.setSelected(showSummary());
+        colCSVDontZoomAfterImport.setSelected(zoomAfterImport());
+        colCSVIgnoreVDOP.setSelected(ignoreDOP());
+        colCSVParallelImport.setSelected(parallelImport());
+        colCSVUseCache.setSelected(useCache());
+        colCSVSplitTracks.setSelected(splitTracks());
+        colCSVFollowFile.setSelected(followFile());
+        colCSVWarnConversionErrors.setSelected(warnConversion());
+        colCSVWarnMissingAudio.setSelected(warnMissingAudio());
+
+        createPreferenceTabWithScrollPane(gui, panel);
     }
 
     @Override
@@ -0,0 +1,80 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+
+/**
+ * Collects the progress of all chunks of an import and forwards it to a
+ * {@link ProgressMonitor}. The work is measured in arbitrary units (bytes
+ * while parsing, records while creating way points); chunks report it in
+ * batches, so the monitor is touched only every few thousand records.
+ *
+ * Once the monitor has been cancelled, {@link #update(long)} returns false
+ * and all chunks stop at their next report.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+class ColumbusCSVProgress {
+    /**
+     * Number of ticks of the monitor.
+     */
+    static final int TICKS = 1000;
+    /**
+     * Number of records between two reports of a chunk.
+     */
+    static final int INTERVAL = 4096;
+
+    private final ProgressMonitor monitor;
+    private final long total;
+    private final AtomicLong done = new AtomicLong();
+    private volatile boolean canceled;
+    private int ticks;
+
+    /**
+     * Creates a new progress.
+     *
+     * @param monitor
+     *            The monitor to report to; its task must have been begun with
+     *            {@link #TICKS} ticks.
+     * @param total
+     *            The total amount of work.
+     */
+    ColumbusCSVProgress(ProgressMonitor monitor, long total) {
+        this.monitor = monitor;
+        this.total = Math.max(1, total);
+    }
+
+    /**
+     * Adds work done by a chunk. May be called from any thread.
+     *
+     * @param units
+     *            The amount of work done since the last report of the chunk.
+     * @return false, if the import has been cancelled.
+     */
+    boolean update(long units) {
+        long d = done.addAndGet(units);
+        synchronized (this) {
+            int t = (int) Math.min(TICKS, d * TICKS / total);
+            if (t > ticks) {
+                ticks = t;
+                monitor.setTicks(t);
+            }
+            if (monitor.isCanceled()) {
+                canceled = true;
+            }
+        }
+        return !canceled;
+    }
+
+    /**
+     * Checks, if the import has been cancelled.
+     *
+     * @return
+     */
+    boolean isCanceled() {
+        return canceled;
+    }
+}
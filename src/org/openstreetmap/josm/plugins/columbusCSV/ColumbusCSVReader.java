@@ -3,30 +3,37 @@ package org.openstreetmap.josm.plugins.columbusCSV;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
-import java.io.BufferedReader;
-import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
-import java.util.zip.DataFormatException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import javax.swing.JOptionPane;
 
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.gpx.GpxData;
 import org.openstreetmap.josm.data.gpx.GpxLink;
 import org.openstreetmap.josm.data.gpx.GpxTrack;
 import org.openstreetmap.josm.data.gpx.WayPoint;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.plugins.columbusCSV.ColumbusCSVDiagnostics.Kind;
 import org.openstreetmap.josm.tools.Logging;
 
 /**
@@ -57,37 +64,55 @@ notes:
 001 Spy mode timer
  *  </code>
  * 
+ * The reader keeps the state of an import in a {@link ColumbusImportContext}.
+ * Imports with an explicit context are thread-safe, so one reader can serve
+ * concurrent imports; the methods without context use a context owned by the
+ * reader and must not be called concurrently.
+ * 
  * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
  * 
  */
 public class ColumbusCSVReader {
     public static final String AUDIO_WAV_LINK = "audio/wav";
     /* GPX tags not provided by the GPXReader class */
-    private static final String VDOP_TAG = "vdop";
-    private static final String HDOP_TAG = "hdop";
-    private static final String PDOP_TAG = "pdop";
-    private static final String ELEVATIONHEIGHT_TAG = "ele";
+    static final String VDOP_TAG = "vdop";
+    static final String HDOP_TAG = "hdop";
+    static final String PDOP_TAG = "pdop";
+    static final String ELEVATIONHEIGHT_TAG = "ele";
     private static final String COMMENT_TAG = "cmt";
     private static final String DESC_TAG = "desc";
-    private static final String FIX_TAG = "fix";
-    private static final String TYPE_TAG = "columbus:type";
+    static final String FIX_TAG = "fix";
+    static final String TYPE_TAG = "columbus:type";
 
-    private static final String[] EMPTY_LINE = new String[] {};
-    private static final String SEPS = ",";
+    /* Way point types as written by the V-900 */
+    static final String TRACK_TYPE = "T";
+    private static final String VOX_TYPE = "V";
+    private static final String WAYPOINT_TYPE = "C";
     /* Lines to read before deciding on Columbus file yes/no */
     private static final int MAX_SCAN_LINES = 20;
     private static final int MIN_SCAN_LINES = 10;
+    /* Max. number of bytes read to check for a Columbus file */
+    private static final int SNIFF_SIZE = 4096;
+    /* Max. number of cached results of isColumbusFile */
+    private static final int MAX_SNIFF_CACHE_SIZE = 1024;
+    private static final Map<String, Boolean> SNIFF_CACHE = Collections.synchronizedMap(
+        new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > MAX_SNIFF_CACHE_SIZE;
+            }
+        });
+    /* Files are split into chunks of at least this size for parallel import */
+    private static final long MIN_CHUNK_SIZE = 4L * 1024 * 1024;
+    /* Chunks per worker thread, so that slow chunks can be balanced */
+    private static final int CHUNKS_PER_THREAD = 4;
+    /* Min. number of records per chunk, if records are already parsed */
+    private static final int MIN_CHUNK_RECORDS = 50000;
+    /* Smaller files are parsed faster than read from the cache */
+    private static final long MIN_CACHED_FILE_SIZE = 1024L * 1024;
 
-    private int dopConversionErrors = 0;
-    private int dateConversionErrors = 0;
-
-    private int firstVoxNumber = -1, lastVoxNumber = -1;
-
-    private final Map<String, WayPoint> voxFiles = new HashMap<>();
-    private final Collection<Collection<WayPoint>> allTrackPts = new ArrayList<>();
-    private final List<WayPoint> trackPts = new ArrayList<>();
-    private final List<WayPoint> allWpts = new ArrayList<>();
-    private String fileDir;
+    /* State of the imports without explicit context */
+    private final ColumbusImportContext context = new ColumbusImportContext();
 
     /**
      * Transforms a Columbus V-900 CSV file into a JOSM GPX layer.
@@ -98,106 +123,231 @@ public class ColumbusCSVReader {
      * @throws IllegalDataException
      */
     public GpxData transformColumbusCSV(String fileName) throws IOException, IllegalDataException {
+        return transformColumbusCSV(fileName, NullProgressMonitor.INSTANCE);
+    }
+
+    /**
+     * Transforms a Columbus V-900 CSV file into a JOSM GPX layer and reports
+     * the progress to the given monitor. The import is aborted, if the
+     * monitor gets cancelled.
+     * 
+     * @param fileName The Columbus file to import.
+     * @param monitor The progress monitor.
+     * @return GPX representation of Columbus track file.
+     * @throws InterruptedIOException if the import has been cancelled.
+     * @throws IOException
+     * @throws IllegalDataException
+     */
+    public GpxData transformColumbusCSV(String fileName, ProgressMonitor monitor)
+        throws IOException, IllegalDataException {
+        return transformColumbusCSV(fileName, ColumbusCSVImportOptions.fromPreferences(), monitor);
+    }
+
+    /**
+     * Transforms a Columbus V-900 CSV file into a JOSM GPX layer using the
+     * given options instead of the preferences.
+     * 
+     * @param fileName The Columbus file to import.
+     * @param options The options of this import.
+     * @param monitor The progress monitor.
+     * @return GPX representation of Columbus track file.
+     * @throws InterruptedIOException if the import has been cancelled.
+     * @throws IOException
+     * @throws IllegalDataException
+     */
+    public GpxData transformColumbusCSV(String fileName, ColumbusCSVImportOptions options,
+        ProgressMonitor monitor) throws IOException, IllegalDataException {
         if (fileName == null || fileName.length() == 0) {
             throw new IllegalArgumentException(
                 "File name must not be null or empty");
         }
-    
+        return transformColumbusCSV(new File(fileName), context.reset(options), monitor);
+    }
+
+    /**
+     * Transforms a Columbus V-900 CSV file into a JOSM GPX layer. All state of
+     * the import is kept in the given context, so this method can be called
+     * concurrently as long as each call uses its own context.
+     * 
+     * @param file The Columbus file to import.
+     * @param ctx The context of this import, reset with the options to use.
+     * @param monitor The progress monitor.
+     * @return GPX representation of Columbus track file.
+     * @throws InterruptedIOException if the import has been cancelled.
+     * @throws IOException
+     * @throws IllegalDataException
+     */
+    public GpxData transformColumbusCSV(File file, ColumbusImportContext ctx, ProgressMonitor monitor)
+        throws IOException, IllegalDataException {
+        if (ctx.getOptions() == null) {
+            throw new IllegalArgumentException("Import context has no options");
+        }
+        monitor.beginTask(tr("Reading Columbus CSV file..."), ColumbusCSVProgress.TICKS);
+        try {
+            return transform(file, ctx, monitor);
+        } catch (InterruptedIOException ex) {
+            // release what has been read so far
+            ctx.clear();
+            throw ex;
+        } finally {
+            monitor.finishTask();
+        }
+    }
+
+    private GpxData transform(File f, ColumbusImportContext ctx, ProgressMonitor monitor)
+        throws IOException, IllegalDataException {
         // GPX data structures
         GpxData gpxData = new GpxData();
+        ColumbusCSVImportOptions options = ctx.getOptions();
+        ctx.begin(f);
     
-        File f = new File(fileName);
-        fileDir = f.getParent();
-        FileInputStream fstream = new FileInputStream(fileName);
-        // Get the object of DataInputStream
-        DataInputStream in = new DataInputStream(fstream);
-        BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
-        String strLine;
-        // Initial values
-        int line = 1;
-        initImport();
-        dropBufferLists();
+        // Re-use the records of a previous import, if the file is unchanged
+        ColumbusCSVCache cache = null;
+        ColumbusTrackStore store = null;
+        long size = f.length();
+        // end of the last imported line
+        long end;
+        if (options.useCache() && size >= MIN_CACHED_FILE_SIZE) {
+            cache = ColumbusCSVCache.getDefault();
+            store = cache.load(f);
+        }
     
-        int waypts = 0, trkpts = 0, audiopts = 0, missaudio = 0, rescaudio = 0;
-        try {
-            // Read File Line By Line
-            while ((strLine = br.readLine()) != null) {
-                String[] csvFields = getCSVLine(strLine); // Get the columns of
-                                      // the current line
-                if (csvFields.length == 0 || line <= 1) { // Skip, if line is
-                                      // header or contains
-                                      // no data
-                    ++line;
-                    continue;
+        List<ColumbusCSVChunk> chunks;
+        if (store != null) {
+            Logging.info("Using cached data of " + f);
+            end = size;
+            ColumbusCSVProgress progress = new ColumbusCSVProgress(monitor, store.size());
+            chunks = splitIntoChunks(store, options.parallelImport());
+            runChunks(chunks, chunk -> createWayPoints(ctx, chunk, progress));
+            checkCanceled(progress);
+        } else {
+            long modified = 0, hash = 0;
+            try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                // Read the file as it is now; the logger may still append to it
+                modified = f.lastModified();
+                size = channel.size();
+                end = size;
+                if (cache != null) {
+                    hash = ColumbusCSVCache.computeHash(channel, size);
+                }
+                if (options.followFile()) {
+                    // the logger may be writing the last line; the follower reads it when complete
+                    end = ColumbusCSVFollower.findLastLineEnd(channel, 0, size);
                 }
+                // parsing and creating the way points take about the same time
+                ColumbusCSVProgress progress = new ColumbusCSVProgress(monitor, 2 * end);
+                chunks = splitIntoChunks(channel, end, options.parallelImport());
+                runChunks(chunks, chunk -> parseChunk(channel, chunk, progress));
+                // Number the records in file order for the messages
+                int records = 0;
+                for (ColumbusCSVChunk chunk : chunks) {
+                    chunk.recordOffset = records;
+                    records += chunk.store.size();
+                }
+                runChunks(chunks, chunk -> createWayPoints(ctx, chunk, progress));
+                checkCanceled(progress);
+            }
     
-                try {
-                    WayPoint wpt = createWayPoint(csvFields, fileDir);
-                    String wptType = (String) wpt.attr.get(TYPE_TAG);
-                    String oldWptType = csvFields[1];
-        
-                    if ("T".equals(wptType)) { // point of track (T)
-                        trackPts.add(wpt);
-                        trkpts++;
-                    } else { // way point (C) / have voice file: V)
-                        if (!wptType.equals(oldWptType)) { // type changed?
-                            if ("V".equals(oldWptType)) { // missing audiofile
-                                missaudio++;
-                            }
-                            if ("C".equals(oldWptType)) { // rescued audiofile
-                                rescaudio++;
-                            }
-                        } else {
-                            if ("V".equals(wptType)) { // wpt with vox
-                                audiopts++;
-                            }
-                        }
-            
-                        gpxData.waypoints.add(wpt); // add the waypoint to the track
-                        waypts++;
-                    }
-        
-                    allWpts.add(wpt);
-        
-                    wpt.attr.remove(TYPE_TAG);
-                } catch (Exception ex) {
-                    br.close();
-                    throw new IllegalDataException(tr("Error in line " + line
+            // Report the first error in file order
+            int line = 0;
+            for (ColumbusCSVChunk chunk : chunks) {
+                if (chunk.readError != null) {
+                    throw chunk.readError;
+                }
+                if (chunk.lineError != null) {
+                    Exception ex = chunk.lineError;
+                    throw new IllegalDataException(tr("Error in line " + (line + chunk.errorLine)
                         + ": " + ex), ex);
                 }
-                ++line;
+                line += chunk.lines;
+            }
+    
+            if (cache != null && end == size) {
+                store = new ColumbusTrackStore();
+                for (ColumbusCSVChunk chunk : chunks) {
+                    store.addAll(chunk.store);
+                }
+                store.trimToSize();
+                cache.save(f, size, modified, hash, store);
             }
-        } finally {
-            // Close the input stream
-            br.close();
         }
     
+        // Merge the chunks in file order and split the track into segments
+        int waypts = 0, trkpts = 0, audiopts = 0, missaudio = 0, rescaudio = 0;
+        ColumbusTrackSegmenter segmenter = options.splitTracks()
+            ? new ColumbusTrackSegmenter(options.segmentTimeGap(), options.segmentDistance()) : null;
+        ColumbusTrackStatistics statistics = new ColumbusTrackStatistics();
+        Collection<Collection<WayPoint>> allTrackPts = ctx.getTrackSegments();
+        List<WayPoint> allWpts = ctx.getAllWayPoints();
+        List<WayPoint> trackPts = new ArrayList<>();
+        int mergedTrackPts = 0;
+        for (ColumbusCSVChunk chunk : chunks) {
+            for (int k = 0; k < chunk.wayPoints.size(); k++) {
+                WayPoint wpt = chunk.wayPoints.get(k);
+                boolean isTrackPoint = TRACK_TYPE.equals(wpt.attr.remove(TYPE_TAG));
+                boolean segmentStart = segmenter != null
+                    && segmenter.isSegmentStart(chunk.store, chunk.from + k, isTrackPoint);
+                if (segmentStart) {
+                    allTrackPts.add(trackPts);
+                    trackPts = new ArrayList<>();
+                }
+                if (isTrackPoint) { // point of track (T)
+                    statistics.add(chunk.store, chunk.from + k, segmentStart);
+                    trackPts.add(wpt);
+                    mergedTrackPts++;
+                } else { // way point (C) / have voice file: V)
+                    gpxData.waypoints.add(wpt); // add the waypoint to the track
+                }
+                allWpts.add(wpt);
+            }
+    
+            trkpts += chunk.trackPoints;
+            waypts += chunk.wayPointsWithoutTrack;
+            audiopts += chunk.audioPoints;
+            missaudio += chunk.missingAudio;
+            rescaudio += chunk.rescuedAudio;
+            ctx.merge(chunk);
+        }
+        ctx.endMerge();
+    
         // do some sanity checks
-        assert trackPts.size() == trkpts;
+        assert mergedTrackPts == trkpts;
         assert gpxData.waypoints.size() == waypts;
-        assert firstVoxNumber <= lastVoxNumber;
+        assert ctx.getFirstVoxNumber() <= ctx.getLastVoxNumber();
     
-        rescaudio += searchForLostAudioFiles(gpxData);
+        rescaudio += searchForLostAudioFiles(ctx, gpxData);
     
         // compose the track
         allTrackPts.add(trackPts);
+        if (allTrackPts.size() > 1) {
+            Logging.info("Split track into " + allTrackPts.size() + " segments");
+        }
+        simplifyTrack(options, allTrackPts, mergedTrackPts);
+        ctx.setEnd(end, segmenter, getLastPoint(allTrackPts));
         GpxTrack trk = new GpxTrack(allTrackPts,
             Collections.emptyMap());
         gpxData.tracks.add(trk);
     
         assert gpxData.routes.size() == 1;
     
-        // Issue conversion warning, if needed
-        if (ColumbusCSVPreferences.warnConversion()
-            && (dateConversionErrors > 0 || dopConversionErrors > 0)) {
-            String message = String.format(
-                "%d date conversion faults and %d DOP conversion errors",
-                dateConversionErrors, dopConversionErrors);
-            ColumbusCSVUtils.showWarningMessage(tr(message));
+        // Show summary and warnings (if wished) in a single message
+        ColumbusCSVDiagnostics diagnostics = ctx.getDiagnostics();
+        diagnostics.logSummary();
+        List<Kind> warnings = new ArrayList<>();
+        if (options.warnMissingAudio()) {
+            warnings.add(Kind.MISSING_AUDIO);
         }
-        // Show summary
-        if (ColumbusCSVPreferences.showSummary()) {
-            showSummary(waypts, trkpts, audiopts, missaudio, rescaudio);
+        if (options.warnConversion()) {
+            warnings.add(Kind.INVALID_DATE);
+            warnings.add(Kind.INVALID_DOP);
+        }
+        String details = diagnostics.getSummary(warnings.toArray(new Kind[0]));
+        ColumbusImportSummary summary = new ColumbusImportSummary(waypts, trkpts, audiopts, missaudio, rescaudio,
+            statistics);
+        ctx.setSummary(summary);
+        Logging.info(summary.toString());
+        if (options.showSummary() || !details.isEmpty()) {
+            showSummary(options, summary, details);
         }
     
         String desc = String.format(
@@ -208,10 +358,321 @@ public class ColumbusCSVReader {
         return gpxData;
     }
 
+    /**
+     * Simplifies all track segments according to the import options. A
+     * limit of the number of points is distributed on the segments by their
+     * size.
+     * 
+     * @param options
+     *            The options of the import.
+     * @param allTrackPts
+     *            The track segments, which are replaced by the simplified
+     *            ones.
+     * @param trkpts
+     *            The total number of track points.
+     */
+    private static void simplifyTrack(ColumbusCSVImportOptions options, Collection<Collection<WayPoint>> allTrackPts,
+        int trkpts) {
+        ColumbusTrackSimplifier.Method method = options.simplifyMethod();
+        if (method == ColumbusTrackSimplifier.Method.NONE) {
+            return;
+        }
+    
+        int maxPoints = options.simplifyMaxPoints();
+        List<Collection<WayPoint>> segments = new ArrayList<>(allTrackPts.size());
+        int kept = 0;
+        for (Collection<WayPoint> segment : allTrackPts) {
+            List<WayPoint> wpts = (List<WayPoint>) segment;
+            int segmentMax = maxPoints > 0 && trkpts > maxPoints
+                ? (int) Math.max(2, (long) maxPoints * wpts.size() / trkpts) : 0;
+            List<WayPoint> res = ColumbusTrackSimplifier.simplify(wpts, method,
+                options.simplifyMaxError(), segmentMax);
+            kept += res.size();
+            segments.add(res);
+        }
+        allTrackPts.clear();
+        allTrackPts.addAll(segments);
+        Logging.info(String.format("Simplified track from %d to %d points", trkpts, kept));
+    }
+
+    /**
+     * Gets the last point of the last non-empty track segment.
+     *
+     * @param allTrackPts
+     *            The track segments.
+     * @return The point or null, if the track is empty.
+     */
+    private static WayPoint getLastPoint(Collection<Collection<WayPoint>> allTrackPts) {
+        WayPoint last = null;
+        for (Collection<WayPoint> segment : allTrackPts) {
+            if (!segment.isEmpty()) {
+                last = ((List<WayPoint>) segment).get(segment.size() - 1);
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Throws an exception, if the import has been cancelled.
+     * 
+     * @param progress
+     *            The progress of the import.
+     * @throws InterruptedIOException
+     */
+    private static void checkCanceled(ColumbusCSVProgress progress) throws InterruptedIOException {
+        if (progress.isCanceled()) {
+            throw new InterruptedIOException(tr("Import cancelled"));
+        }
+    }
+    
+    /**
+     * Splits a file into chunks at line boundaries. Small files or disabled
+     * parallel import result in a single chunk covering the whole file.
+     * 
+     * @param channel
+     *            The channel of the file to import.
+     * @param size
+     *            The number of bytes to import.
+     * @param parallel
+     *            Split into several chunks, if the file is large enough.
+     * @return The list of chunks in file order.
+     * @throws IOException
+     */
+    private static List<ColumbusCSVChunk> splitIntoChunks(FileChannel channel, long size, boolean parallel)
+        throws IOException {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        List<ColumbusCSVChunk> chunks = new ArrayList<>();
+    
+        if (parallelism < 2 || size < 2 * MIN_CHUNK_SIZE
+            || !parallel) {
+            chunks.add(new ColumbusCSVChunk(0, size));
+            return chunks;
+        }
+    
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, size / ((long) parallelism * CHUNKS_PER_THREAD));
+        long start = 0;
+        while (start < size) {
+            long end = findNextLine(channel, start + chunkSize, size);
+            chunks.add(new ColumbusCSVChunk(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+    
+    /**
+     * Splits already parsed records into chunks for creating the way points
+     * in parallel.
+     * 
+     * @param store
+     *            The records of the file to import.
+     * @param parallel
+     *            Split into several chunks, if there are enough records.
+     * @return The list of chunks in record order.
+     */
+    private static List<ColumbusCSVChunk> splitIntoChunks(ColumbusTrackStore store, boolean parallel) {
+        int size = store.size();
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        List<ColumbusCSVChunk> chunks = new ArrayList<>();
+    
+        if (parallelism < 2 || size < 2 * MIN_CHUNK_RECORDS
+            || !parallel) {
+            chunks.add(new ColumbusCSVChunk(store, 0, size));
+            return chunks;
+        }
+    
+        int chunkSize = Math.max(MIN_CHUNK_RECORDS, size / (parallelism * CHUNKS_PER_THREAD));
+        for (int from = 0; from < size; from += chunkSize) {
+            chunks.add(new ColumbusCSVChunk(store, from, Math.min(size, from + chunkSize)));
+        }
+        return chunks;
+    }
+    
+    /**
+     * Runs an action for each chunk, in parallel if there is more than one.
+     * 
+     * @param chunks
+     *            The chunks to process.
+     * @param action
+     *            The action to run.
+     */
+    private static void runChunks(List<ColumbusCSVChunk> chunks, Consumer<ColumbusCSVChunk> action) {
+        if (chunks.size() == 1) {
+            action.accept(chunks.get(0));
+        } else {
+            ForkJoinPool.commonPool().invoke(new ChunkTask(chunks, 0, chunks.size(), action));
+        }
+    }
+    
+    /**
+     * Finds the start of the line following the given offset.
+     * 
+     * @param channel
+     *            The channel of the file to import.
+     * @param offset
+     *            The offset to start the search at.
+     * @param size
+     *            The size of the file.
+     * @return The offset of the next line or the file size, if there is no
+     *         further line.
+     * @throws IOException
+     */
+    private static long findNextLine(FileChannel channel, long offset, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        while (offset < size) {
+            buf.clear();
+            int n = channel.read(buf, offset);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += n;
+        }
+        return size;
+    }
+    
+    /**
+     * Parses all lines of a chunk into the chunk's record store. Errors are
+     * recorded in the chunk, so that they can be reported in file order.
+     * 
+     * @param channel
+     *            The channel of the file to import.
+     * @param chunk
+     *            The chunk to parse.
+     * @param progress
+     *            Receives the number of bytes parsed.
+     */
+    static void parseChunk(FileChannel channel, ColumbusCSVChunk chunk, ColumbusCSVProgress progress) {
+        ColumbusCSVTokenizer tok = new ColumbusCSVTokenizer();
+        long reported = chunk.start;
+        try (ColumbusCSVLineReader br = new ColumbusCSVLineReader(channel, chunk.start, chunk.end)) {
+            // Read chunk line by line
+            while (br.nextLine()) {
+                if (++chunk.lines % ColumbusCSVProgress.INTERVAL == 0) {
+                    long pos = br.getPosition();
+                    if (!progress.update(pos - reported)) {
+                        return;
+                    }
+                    reported = pos;
+                }
+                // Get the columns of the current line
+                int fields = tok.tokenize(br.getBuffer(), br.getLineStart(), br.getLineEnd());
+                if (fields == 0 || (chunk.containsHeader() && chunk.lines <= 1)) {
+                    // Skip, if line is header or contains no data
+                    continue;
+                }
+    
+                try {
+                    chunk.store.add(chunk.parser.parse(tok));
+                } catch (Exception ex) {
+                    if (chunk.lineError == null) {
+                        chunk.lineError = ex;
+                        chunk.errorLine = chunk.lines;
+                    }
+                    if (!chunk.skipLineErrors) {
+                        return;
+                    }
+                    chunk.skippedLines++;
+                }
+            }
+            progress.update(br.getPosition() - reported);
+        } catch (IOException ex) {
+            chunk.readError = ex;
+        }
+        chunk.to = chunk.store.size();
+    }
+    
+    /**
+     * Creates the way points for all records of a chunk and updates the
+     * counters of the chunk.
+     * 
+     * @param ctx
+     *            The context of the import.
+     * @param chunk
+     *            The chunk to process.
+     * @param progress
+     *            Receives the work done in bytes of the chunk or records, if
+     *            the chunk has no byte range.
+     */
+    void createWayPoints(ColumbusImportContext ctx, ColumbusCSVChunk chunk, ColumbusCSVProgress progress) {
+        if ((chunk.lineError != null && !chunk.skipLineErrors) || chunk.readError != null
+            || progress.isCanceled()) {
+            return;
+        }
+        int n = chunk.to - chunk.from;
+        long size = chunk.start < 0 ? n : chunk.end - chunk.start;
+        long reported = 0;
+        for (int i = chunk.from; i < chunk.to; i++) {
+            if ((i - chunk.from) % ColumbusCSVProgress.INTERVAL == ColumbusCSVProgress.INTERVAL - 1) {
+                long done = size * (i - chunk.from) / n;
+                if (!progress.update(done - reported)) {
+                    return;
+                }
+                reported = done;
+            }
+            WayPoint wpt = createWayPoint(ctx, chunk.store, i, chunk);
+            String wptType = (String) wpt.attr.get(TYPE_TAG);
+            String oldWptType = getWayPointType(chunk.store.getTag(i));
+    
+            if (TRACK_TYPE.equals(wptType)) { // point of track (T)
+                chunk.trackPoints++;
+            } else { // way point (C) / have voice file: V)
+                if (!wptType.equals(oldWptType)) { // type changed?
+                    if (VOX_TYPE.equals(oldWptType)) { // missing audiofile
+                        chunk.missingAudio++;
+                    }
+                    if (WAYPOINT_TYPE.equals(oldWptType)) { // rescued audiofile
+                        chunk.rescuedAudio++;
+                    }
+                } else {
+                    if (VOX_TYPE.equals(wptType)) { // wpt with vox
+                        chunk.audioPoints++;
+                    }
+                }
+                chunk.wayPointsWithoutTrack++;
+            }
+            chunk.wayPoints.add(wpt);
+        }
+        progress.update(size - reported);
+    }
+    
+    /**
+     * Runs an action on a range of chunks on the fork/join pool by splitting
+     * it in halves until a single chunk is left.
+     */
+    private static class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final transient List<ColumbusCSVChunk> chunks;
+        private final transient Consumer<ColumbusCSVChunk> action;
+        private final int from, to;
+    
+        ChunkTask(List<ColumbusCSVChunk> chunks, int from, int to, Consumer<ColumbusCSVChunk> action) {
+            this.chunks = chunks;
+            this.action = action;
+            this.from = from;
+            this.to = to;
+        }
+    
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                action.accept(chunks.get(from));
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ChunkTask(chunks, from, mid, action),
+                    new ChunkTask(chunks, mid, to, action));
+            }
+        }
+    }
+
     /**
      * Checks a (CSV) file for Columbus tags. This method is a simplified copy
-     * of the @link transformColumbusCSV and just checks a small amount of
-     * lines.
+     * of the @link transformColumbusCSV and just checks the first lines within
+     * the first {@link #SNIFF_SIZE} bytes of the file. The result is cached
+     * per path, size and modification time of the file.
      * 
      * @param file The file to check.
      * @return true, if given file is a Columbus file; otherwise false.
@@ -219,39 +680,68 @@ public class ColumbusCSVReader {
     public static boolean isColumbusFile(File file) throws IOException {
         if (file == null) return false; 
         
-        FileInputStream fstream = new FileInputStream(file);
-        // Get the object of DataInputStream
-        DataInputStream in = new DataInputStream(fstream);
-        BufferedReader br = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
-        String strLine;
-        // Initial values
+        String key = file.getAbsolutePath() + '|' + file.length() + '|' + file.lastModified();
+        Boolean cached = SNIFF_CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        boolean res = sniffColumbusFile(file);
+        SNIFF_CACHE.put(key, res);
+        return res;
+    }
+
+    /**
+     * Checks the first lines of a file for Columbus tags without using the
+     * cache of {@link #isColumbusFile(File)}.
+     * 
+     * @param file The file to check.
+     * @return true, if given file is a Columbus file; otherwise false.
+     * @throws IOException
+     */
+    static boolean sniffColumbusFile(File file) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(SNIFF_SIZE);
+        boolean eof = false;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (buf.hasRemaining() && !eof) {
+                eof = channel.read(buf) < 0;
+            }
+        }
+    
+        ColumbusCSVTokenizer tok = new ColumbusCSVTokenizer();
         int line = 0;
         int columbusLines = 0;
-        try {
-            // Read File Line By Line until we either exceed the maximum scan
-            // lines or we are sure that we have a columbus file
-            while ((strLine = br.readLine()) != null
-                && (line < MAX_SCAN_LINES || columbusLines > MIN_SCAN_LINES)) {
-                String[] csvFields = getCSVLine(strLine); // Get the columns of
-                                      // the current line
-                ++line;
-                if (csvFields.length == 0 || line <= 1) { // Skip, if line is
-                                      // header or contains
-                                      // no data
-                    continue;
-                }
-        
-                String wptType = csvFields[1];
-                // Check for columbus tag
-                if ("T".equals(wptType) || "V".equals(wptType)
-                    || "C".equals(wptType)) {
-                    // ok, we found one line but still not convinced ;-)
-                    columbusLines++;
-                }
+        int start = 0;
+        int limit = buf.position();
+        // Scan line by line until we either exceed the maximum scan lines or
+        // we are sure that we have a columbus file
+        while (line < MAX_SCAN_LINES && columbusLines <= MIN_SCAN_LINES && start < limit) {
+            int end = start;
+            while (end < limit && buf.get(end) != '\n') {
+                end++;
+            }
+            if (end == limit && !eof) {
+                break; // line is cut off by the prefix
+            }
+            int next = end + 1;
+            if (end > start && buf.get(end - 1) == '\r') {
+                end--;
+            }
+            // Get the columns of the current line
+            int fields = tok.tokenize(buf, start, end);
+            start = next;
+            ++line;
+            if (fields < 2 || line <= 1) { // Skip, if line is
+                                  // header or contains
+                                  // no data
+                continue;
+            }
+    
+            // Check for columbus tag
+            if (tok.fieldEquals(1, 'T') || tok.fieldEquals(1, 'V')
+                || tok.fieldEquals(1, 'C')) {
+                // ok, we found one line but still not convinced ;-)
+                columbusLines++;
             }
-        } finally {
-            // Close the input stream
-            br.close();
         }
     
         return columbusLines > MIN_SCAN_LINES;
@@ -262,120 +752,204 @@ public class ColumbusCSVReader {
      * way point. This requires that the file date of the wav files is kept -
      * there is no other way to assign the audio files to way points.
      * 
+     * Each unlinked <tt>voxNNNNN.wav</tt> file of the import directory is
+     * attached to the last point recorded before the file date. If the file
+     * date is not within the time range of the track, files numbered between
+     * the first and last linked vox file are attached to the way point right
+     * before the next linked vox file.
+     * 
+     * @param ctx
      * @param gpx
      * @return
      */
-    private int searchForLostAudioFiles(GpxData gpx) {
-        Map<String, WayPoint> voxFiles = getVoxFileMap();
+    private int searchForLostAudioFiles(ColumbusImportContext ctx, GpxData gpx) {
+        List<WayPoint> wpts = ctx.getAllWayPoints();
+        ColumbusVoxIndex voxIndex = ctx.getVoxIndex();
+        if (wpts.isEmpty() || voxIndex == null) {
+            return 0;
+        }
     
-        int first, last;
-        first = getFirstVoxNumber();
-        last = getLastVoxNumber();
+        // Linked vox files by number and the index of their way point
+        TreeMap<Integer, WayPoint> linkedVox = new TreeMap<>();
+        for (Map.Entry<String, WayPoint> e : ctx.getVoxFileMap().entrySet()) {
+            int n = ColumbusVoxIndex.getVoxNumber(e.getKey());
+            if (n >= 0) {
+                linkedVox.put(n, e.getValue());
+            }
+        }
+        Map<WayPoint, Integer> wptIndex = new IdentityHashMap<>();
+        Set<WayPoint> linkedWpts = Collections.newSetFromMap(new IdentityHashMap<>());
+        linkedWpts.addAll(linkedVox.values());
     
+        // Time stamps of all points with date for binary search
+        long[] times = ctx.getTimes(wpts.size());
+        int[] timeIndex = ctx.getTimeIndex(wpts.size());
+        int timed = 0;
+        boolean sorted = true;
+        for (int i = 0; i < wpts.size(); i++) {
+            WayPoint wpt = wpts.get(i);
+            if (linkedWpts.contains(wpt)) {
+                wptIndex.put(wpt, i);
+            }
+            if (wpt.hasDate()) {
+                times[timed] = wpt.getTimeInMillis();
+                timeIndex[timed] = i;
+                sorted &= timed == 0 || times[timed - 1] <= times[timed];
+                timed++;
+            }
+        }
+        if (!sorted) {
+            sortByTime(times, timeIndex, timed);
+        }
+    
+        Set<WayPoint> gpxWpts = Collections.newSetFromMap(new IdentityHashMap<>());
+        gpxWpts.addAll(gpx.waypoints);
+        int first = ctx.getFirstVoxNumber();
+        int last = ctx.getLastVoxNumber();
         int rescuedFiles = 0;
     
-        for (int i = first; i < last; i++) {
-            String voxFile = String.format("vox%05d.wav", i);
-            String nextVoxFile = String.format("vox%05d.wav", i + 1);
-            if (!voxFiles.containsKey(voxFile)) {
-                Logging.info("Found lost vox file " + voxFile);
-        
-                File f = getVoxFilePath(voxFile);
-                WayPoint nearestWpt = null;
-                List<WayPoint> wpts = getAllWayPoints();
+        for (Map.Entry<Integer, File> e : voxIndex.getNumberedFiles().entrySet()) {
+            int voxNumber = e.getKey();
+            if (linkedVox.containsKey(voxNumber)) {
+                continue;
+            }
+            File f = e.getValue();
+            String voxFile = f.getName();
+    
+            WayPoint nearestWpt = null;
+            long fileTime = f.lastModified();
+            if (timed > 0 && fileTime >= times[0] && fileTime <= times[timed - 1]) {
+                // Attach recording to the last point before the file date
+                nearestWpt = wpts.get(timeIndex[floorIndex(times, timed, fileTime)]);
+            } else if (voxNumber > first && voxNumber < last) {
                 // Attach recording to the way point right before the next vox
                 // file
-                if (voxFiles.containsKey(nextVoxFile)) {
-                    WayPoint nextWpt = voxFiles.get(nextVoxFile);
-                    int idx = getAllWayPoints().indexOf(nextWpt) - 5;
-                    if (idx >= 0) {
-                        nearestWpt = wpts.get(idx);
-                    } else {
-                        nearestWpt = wpts.get(0);
-                    }
+                Map.Entry<Integer, WayPoint> next = linkedVox.higherEntry(voxNumber);
+                if (next != null) {
+                    int idx = wptIndex.get(next.getValue()) - 5;
+                    nearestWpt = wpts.get(Math.max(idx, 0));
                 } else { // attach to last way point
                     nearestWpt = wpts.get(wpts.size() - 1);
                 }
-        
-                // Add link to found way point
-                if (nearestWpt != null) {
-                    if (addLinkToWayPoint(nearestWpt, "*" + voxFile + "*", f)) {
-                        Logging.info(String.format(
-                            "Linked file %s to position %s", voxFile,
-                            nearestWpt.getCoor().toDisplayString()));
-                        // Add linked way point to way point list of GPX; otherwise it would not be shown correctly
-                        gpx.waypoints.add(nearestWpt);
-                        rescuedFiles++;
-                    } else {
-                        Logging.error(String.format("Could not link vox file %s due to invalid parameters.", voxFile));
-                    }
+            }
+            if (nearestWpt == null) {
+                continue; // most likely belongs to another track
+            }
+            // Add link to found way point
+            if (addLinkToWayPoint(nearestWpt, "*" + voxFile + "*", f)) {
+                ctx.getDiagnostics().report(Kind.RESCUED_AUDIO, String.format(
+                    "Linked lost file %s to position %s", voxFile,
+                    nearestWpt.getCoor().toDisplayString()));
+                // Add linked way point to way point list of GPX; otherwise it would not be shown correctly
+                if (gpxWpts.add(nearestWpt)) {
+                    gpx.waypoints.add(nearestWpt);
                 }
+                rescuedFiles++;
+            } else {
+                Logging.error(String.format("Could not link vox file %s due to invalid parameters.", voxFile));
             }
         }
     
         return rescuedFiles;
     }
-
+    
+    /**
+     * Gets the index of the last time stamp not after the given time.
+     * 
+     * @param times
+     *            The ascending time stamps.
+     * @param n
+     *            The number of time stamps.
+     * @param time
+     *            The time to search for; must not be before the first time
+     *            stamp.
+     * @return
+     */
+    private static int floorIndex(long[] times, int n, long time) {
+        int lo = 0, hi = n - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (times[mid] <= time) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+    
     /**
+     * Sorts time stamps along with their point index, if the device clock
+     * has jumped backwards.
      * 
+     * @param times
+     * @param timeIndex
+     * @param n
      */
-    private void initImport() {
-        dateConversionErrors = 0;
-        dopConversionErrors = 0;
-        firstVoxNumber = Integer.MAX_VALUE;
-        lastVoxNumber = Integer.MIN_VALUE;
+    private static void sortByTime(long[] times, int[] timeIndex, int n) {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(times[a], times[b]));
+        long[] t = Arrays.copyOf(times, n);
+        int[] idx = Arrays.copyOf(timeIndex, n);
+        for (int i = 0; i < n; i++) {
+            times[i] = t[order[i]];
+            timeIndex[i] = idx[order[i]];
+        }
     }
 
     /**
-     * Clears all temporary buffers.
+     * Clears all temporary buffers of the last import without explicit
+     * context.
      */
     void dropBufferLists() {
-        allTrackPts.clear();
-        trackPts.clear();
-        voxFiles.clear();
+        context.clear();
     }
 
     /**
      * Shows the summary to the user.
      * 
-     * @param waypts
-     *            The number of imported way points
-     * @param trkpts
-     *            The number of imported track points
-     * @param audiopts
-     *            The number of imported way points with vox
-     * @param missaudio
-     *            The number of missing audio files
-     * @param rescaudio
-     *            The number of rescued audio files
-     */
-    private void showSummary(int waypts, int trkpts, int audiopts,
-        int missaudio, int rescaudio) {
-        String message = "";
-        if (missaudio > 0) {
-            message = String
-                .format("Imported %d track points and %d way points (%d with audio, %d rescued).%n"+
-                        "Note: %d audio files could not be found, please check marker comments!",
-                    trkpts, waypts, audiopts, rescaudio, missaudio);
+     * @param options
+     *            The options of the import.
+     * @param summary
+     *            The result of the import.
+     * @param details
+     *            The warnings of the import; if not empty, the summary is
+     *            shown as warning.
+     */
+    private static void showSummary(ColumbusCSVImportOptions options, ColumbusImportSummary summary, String details) {
+        String message = summary.getMessage();
+        if (details.isEmpty()) {
+            ColumbusCSVUtils.showMessageLater(message, tr("Information"), JOptionPane.INFORMATION_MESSAGE);
         } else {
-            message = String
-                .format("Imported %d track points and %d way points (%d with audio, %d rescued).",
-                    trkpts, waypts, audiopts, rescaudio);
+            if (!options.showSummary()) {
+                message = "";
+            }
+            ColumbusCSVUtils.showMessageLater(String.format("%s%n%n%s", message, details).trim(),
+                tr("Warning"), JOptionPane.WARNING_MESSAGE);
         }
-        ColumbusCSVUtils.showInfoMessage(tr(message));
     }
 
     /**
-     * Creates a GPX way point from a tokenized CSV line. The attributes of the
-     * way point depends on whether the Columbus logger runs in simple or
-     * professional mode.
+     * Creates a GPX way point from a record of the CSV file. The attributes
+     * of the way point depends on whether the Columbus logger runs in simple
+     * or professional mode.
      * 
-     * @param csvLine
-     *            The columns of a single CSV line.
+     * @param ctx
+     *            The context of the import.
+     * @param store
+     *            The records of the file.
+     * @param i
+     *            The number of the record to convert.
+     * @param chunk
+     *            The chunk receiving vox files and conversion errors.
      * @return The corresponding way point instance.
-     * @throws DataFormatException
      */
-    private WayPoint createWayPoint(String[] csvLine, String fileDir) throws IOException {
+    private WayPoint createWayPoint(ColumbusImportContext ctx, ColumbusTrackStore store, int i,
+        ColumbusCSVChunk chunk) {
+        ColumbusCSVDiagnostics diagnostics = ctx.getDiagnostics();
         // Sample line in simple mode
         // INDEX,TAG,DATE,TIME,LATITUDE N/S,LONGITUDE
         // E/W,HEIGHT,SPEED,HEADING,VOX
@@ -385,92 +959,88 @@ public class ColumbusCSVReader {
         // INDEX,TAG,DATE,TIME,LATITUDE N/S,LONGITUDE
         // E/W,HEIGHT,SPEED,HEADING,FIX MODE,VALID,PDOP,HDOP,VDOP,VOX
         // 1,T,090508,191448,48.856928N,009.091153E,330,3,0,3D,SPS ,1.4,1.2,0.8,
-        if (csvLine.length != 10 && csvLine.length != 15)
-            throw new IOException("Invalid number of tokens: " + csvLine.length);
-        boolean isExtMode = csvLine.length > 10;
-    
-        // Extract latitude/longitude first
-        String lat = csvLine[4];
-        double latVal = Double.parseDouble(lat.substring(0, lat.length() - 1));
-        if (lat.endsWith("S")) {
-            latVal = -latVal;
-        }
-    
-        String lon = csvLine[5];
-        double lonVal = Double.parseDouble(lon.substring(0, lon.length() - 1));
-        if (lon.endsWith("W")) {
-            lonVal = -lonVal;
-        }
-        LatLon pos = new LatLon(latVal, lonVal);
-        WayPoint wpt = new WayPoint(pos);
+        LatLon pos = new LatLon(ColumbusCSVCoordinateParser.toDegrees(store.getLatitude(i)),
+            ColumbusCSVCoordinateParser.toDegrees(store.getLongitude(i)));
+        // Elevation height (altitude provided by GPS signal), speed and heading
+        ColumbusWayPoint wpt = new ColumbusWayPoint(pos, store.getHeight(i),
+            store.getSpeed(i), store.getHeading(i));
     
         // set wpt type
-        wpt.attr.put(TYPE_TAG, csvLine[1]);
+        String wptType = getWayPointType(store.getTag(i));
+        wpt.attr.put(TYPE_TAG, wptType);
     
         // Check for audio file and link it, if present
-        String voxFile = null;
-        if (isExtMode) {
-            voxFile = csvLine[14];
-        } else {
-            voxFile = csvLine[9];
-        }
-    
-        if (!ColumbusCSVUtils.isStringNullOrEmpty(voxFile)) {
-            voxFile = voxFile + ".wav";
-            File file = getVoxFilePath(fileDir, voxFile);
-            if (file != null && file.exists()) {
+        String voxName = store.getVoxFile(i);
+        if (voxName != null) {
+            String voxFile = voxName + ".wav";
+            File file = ctx.getVoxIndex().getFile(voxFile);
+            if (file != null) {
                 // link vox file
-                int voxNum = getNumberOfVoxfile(voxFile);
-                lastVoxNumber = Math.max(voxNum, lastVoxNumber);
-                firstVoxNumber = Math.min(voxNum, firstVoxNumber);
+                int voxNumber = getNumberOfVoxfile(voxFile);
+                if (voxNumber >= 0) {
+                    chunk.addVoxNumber(voxNumber);
+                }
         
                 addLinkToWayPoint(wpt, voxFile, file);
         
-                if (!"V".equals(csvLine[1])) {
-                    Logging.info("Rescued unlinked audio file " + voxFile);
+                if (!VOX_TYPE.equals(wptType)) {
+                    diagnostics.report(Kind.RESCUED_AUDIO, "Rescued unlinked audio file " + voxFile);
                 }
-                voxFiles.put(voxFile, wpt);
+                chunk.voxFiles.put(voxFile, wpt);
         
                 // set type to way point with vox
-                wpt.attr.put(TYPE_TAG, "V");
+                wpt.attr.put(TYPE_TAG, VOX_TYPE);
             } else { // audio file not found -> issue warning
-            	Logging.error("File " + voxFile + " not found!");
                 String warnMsg = tr("Missing audio file") + ": " + voxFile;
-                Logging.error(warnMsg);
-                if (ColumbusCSVPreferences.warnMissingAudio()) {
-                    ColumbusCSVUtils.showInfoMessage(warnMsg);
-                }
+                diagnostics.report(Kind.MISSING_AUDIO, warnMsg);
                 wpt.attr.put(ColumbusCSVReader.COMMENT_TAG, warnMsg);
                 // set type to ordinary way point
-                wpt.attr.put(TYPE_TAG, "C");
+                wpt.attr.put(TYPE_TAG, WAYPOINT_TYPE);
             }
         }
     
-        // Extract date/time
-        SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyMMdd/HHmmss");
-    
-        try {
-            wpt.setInstant(sdf.parse(csvLine[2] + "/" + csvLine[3]).toInstant());
-        } catch (ParseException ex) {
-            dateConversionErrors++;
-            Logging.error(ex);
+        // Date/time (UTC)
+        long time = store.getTime(i);
+        if (time != ColumbusRecord.NO_TIME) {
+            wpt.setTimeInMillis(time * 1000);
+        } else {
+            chunk.dateConversionErrors++;
+            diagnostics.report(Kind.INVALID_DATE, "Invalid date/time in record " + chunk.getRecordNumber(i));
         }
     
-        // Add further attributes
-        // Elevation height (altitude provided by GPS signal)
-        wpt.attr.put(ColumbusCSVReader.ELEVATIONHEIGHT_TAG, csvLine[6]);
-    
         // Add data of extended mode, if applicable
-        if (isExtMode && !ColumbusCSVPreferences.ignoreDOP()) {
-            addExtendedGPSData(csvLine, wpt);
+        if (store.isExtended(i) && !ctx.getOptions().ignoreDOP()) {
+            addExtendedGPSData(diagnostics, store, i, wpt, chunk);
         }
     
         return wpt;
     }
 
+    /**
+     * Gets the way point type for a tag. For the types known by the V-900 no
+     * string is created.
+     * 
+     * @param tag
+     *            The tag of the record.
+     * @return
+     */
+    private static String getWayPointType(char tag) {
+        switch (tag) {
+        case 'T':
+            return TRACK_TYPE;
+        case 'V':
+            return VOX_TYPE;
+        case 'C':
+            return WAYPOINT_TYPE;
+        default:
+            return String.valueOf(tag);
+        }
+    }
+
     /**
      * Gets the full path of the audio file. Same as
-     * <code>getVoxFilePath(getWorkingDirOfImport(), voxFile)</code>.
+     * <code>getVoxFilePath(getWorkingDirOfImport(), voxFile)</code>, but
+     * looks up the directory listing taken at the start of the import.
      * 
      * @param voxFile
      *            The name of the audio file without dir and extension.
@@ -478,6 +1048,10 @@ public class ColumbusCSVReader {
      * 
      */
     public File getVoxFilePath(String voxFile) {
+        ColumbusVoxIndex voxIndex = context.getVoxIndex();
+        if (voxIndex != null) {
+            return voxIndex.getFile(voxFile);
+        }
         return getVoxFilePath(getWorkingDirOfImport(), voxFile);
     }
 
@@ -508,34 +1082,44 @@ public class ColumbusCSVReader {
     /**
      * Adds extended GPS data (*DOP and fix mode) to the way point
      * 
-     * @param csvLine
+     * @param diagnostics
+     * @param store
+     * @param i
      * @param wpt
+     * @param chunk
      */
-    private void addExtendedGPSData(String[] csvLine, WayPoint wpt) {
+    private static void addExtendedGPSData(ColumbusCSVDiagnostics diagnostics, ColumbusTrackStore store, int i,
+        ColumbusWayPoint wpt, ColumbusCSVChunk chunk) {
         // Fix mode
-        wpt.attr.put(FIX_TAG, csvLine[9].toLowerCase());
+        String fixMode = store.getFixMode(i);
+        if (fixMode != null) {
+            wpt.attr.put(FIX_TAG, fixMode);
+        }
     
-        Float f;
+        float f;
         // Position errors (dop = dilution of position)
-        f = ColumbusCSVUtils.floatFromString(csvLine[11]);
+        f = store.getPdop(i);
         if (!Float.isNaN(f)) {
-            wpt.attr.put(ColumbusCSVReader.PDOP_TAG, f);
+            wpt.setPdop(f);
         } else {
-            dopConversionErrors++;
+            chunk.dopConversionErrors++;
+            diagnostics.report(Kind.INVALID_DOP, "Invalid PDOP in record " + chunk.getRecordNumber(i));
         }
     
-        f = ColumbusCSVUtils.floatFromString(csvLine[12]);
+        f = store.getHdop(i);
         if (!Float.isNaN(f)) {
-            wpt.attr.put(ColumbusCSVReader.HDOP_TAG, f);
+            wpt.setHdop(f);
         } else {
-            dopConversionErrors++;
+            chunk.dopConversionErrors++;
+            diagnostics.report(Kind.INVALID_DOP, "Invalid HDOP in record " + chunk.getRecordNumber(i));
         }
     
-        f = ColumbusCSVUtils.floatFromString(csvLine[13]);
+        f = store.getVdop(i);
         if (!Float.isNaN(f)) {
-            wpt.attr.put(ColumbusCSVReader.VDOP_TAG, f);
+            wpt.setVdop(f);
         } else {
-            dopConversionErrors++;
+            chunk.dopConversionErrors++;
+            diagnostics.report(Kind.INVALID_DOP, "Invalid VDOP in record " + chunk.getRecordNumber(i));
         }
     }
 
@@ -566,45 +1150,29 @@ public class ColumbusCSVReader {
         return true;
     }
 
-    /**
-     * Splits a line of the CSV files into it's tokens.
-     * 
-     * @param line
-     * @return Array containing the tokens of the CSV file.
-     */
-    private static String[] getCSVLine(String line) {
-        if (line == null || line.length() == 0)
-            return EMPTY_LINE;
-    
-        StringTokenizer st = new StringTokenizer(line, SEPS, false);
-        int n = st.countTokens();
-    
-        String[] res = new String[n];
-        for (int i = 0; i < n; i++) {
-            res[i] = st.nextToken().trim();
-        }
-        return res;
-    }
-
     /**
      * Extracts the number from a VOX file name, e. g. for a file named
-     * "VOX01524" this method will return 1524.
+     * "VOX01524.wav" this method will return 1524.
      * 
      * @param fileName
      *            The vox file name.
      * @return The number of the vox file or -1; if the given name was not
      *         valid.
      */
-    private int getNumberOfVoxfile(String fileName) {
+    private static int getNumberOfVoxfile(String fileName) {
         if (fileName == null)
             return -1;
     
-        try {
-            String num = fileName.substring(3);
-            return Integer.parseInt(num);
-        } catch (NumberFormatException e) {
-            return -1;
-        }
+        return ColumbusVoxIndex.getVoxNumber(fileName);
+    }
+
+    /**
+     * Gets the context of the last import without explicit context.
+     * 
+     * @return
+     */
+    public ColumbusImportContext getContext() {
+        return context;
     }
 
     /**
@@ -613,7 +1181,7 @@ public class ColumbusCSVReader {
      * @return
      */
     public int getNumberOfDateConversionErrors() {
-        return dateConversionErrors;
+        return context.getNumberOfDateConversionErrors();
     }
 
     /**
@@ -622,7 +1190,25 @@ public class ColumbusCSVReader {
      * @return
      */
     public int getNumberOfDOPConversionErrors() {
-        return dopConversionErrors;
+        return context.getNumberOfDOPConversionErrors();
+    }
+
+    /**
+     * Gets the warnings of the last import.
+     * 
+     * @return
+     */
+    public ColumbusCSVDiagnostics getDiagnostics() {
+        return context.getDiagnostics();
+    }
+
+    /**
+     * Gets the summary and track statistics of the last import.
+     * 
+     * @return The summary or null, if no file has been imported.
+     */
+    public ColumbusImportSummary getImportSummary() {
+        return context.getImportSummary();
     }
 
     /**
@@ -631,7 +1217,7 @@ public class ColumbusCSVReader {
      * @return
      */
     public int getFirstVoxNumber() {
-        return firstVoxNumber;
+        return context.getFirstVoxNumber();
     }
 
     /**
@@ -640,7 +1226,7 @@ public class ColumbusCSVReader {
      * @return
      */
     public int getLastVoxNumber() {
-        return lastVoxNumber;
+        return context.getLastVoxNumber();
     }
 
     /**
@@ -649,7 +1235,7 @@ public class ColumbusCSVReader {
      * @return
      */
     public Map<String, WayPoint> getVoxFileMap() {
-        return voxFiles;
+        return context.getVoxFileMap();
     }
 
     /**
@@ -658,7 +1244,7 @@ public class ColumbusCSVReader {
      * @return
      */
     public List<WayPoint> getAllWayPoints() {
-        return allWpts;
+        return context.getAllWayPoints();
     }
 
     /**
@@ -667,6 +1253,6 @@ public class ColumbusCSVReader {
      * @return
      */
     public String getWorkingDirOfImport() {
-        return fileDir;
+        return context.getWorkingDirOfImport();
     }
 }
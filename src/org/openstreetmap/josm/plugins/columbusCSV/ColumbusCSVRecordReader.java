@@ -0,0 +1,139 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streams the records of a Columbus CSV file one at a time. Unlike
+ * {@link ColumbusCSVReader} this class neither creates JOSM way points nor
+ * keeps any record, so memory use is constant regardless of the file size.
+ * It also never shows any dialog and can be used headless:
+ *
+ * <pre>
+ * try (ColumbusCSVRecordReader r = new ColumbusCSVRecordReader(file)) {
+ *     r.forEachRemaining(rec -&gt; ...);
+ * }
+ * </pre>
+ *
+ * Malformed lines are reported by an {@link UncheckedIOException} containing
+ * the line number.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public class ColumbusCSVRecordReader implements Iterator<ColumbusRecord>, Closeable {
+    private final ColumbusCSVLineReader lineReader;
+    private final ColumbusCSVTokenizer tok = new ColumbusCSVTokenizer();
+    private final ColumbusRecordParser parser = new ColumbusRecordParser();
+
+    private ColumbusRecord next;
+    private int line;
+
+    /**
+     * Creates a new record reader.
+     *
+     * @param file
+     *            The Columbus file to read.
+     * @throws IOException
+     */
+    public ColumbusCSVRecordReader(File file) throws IOException {
+        lineReader = new ColumbusCSVLineReader(file);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readRecord();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public ColumbusRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ColumbusRecord res = next;
+        next = null;
+        return res;
+    }
+
+    /**
+     * Reads the next record, skipping the header and empty lines.
+     *
+     * @return The next record or null, if the end of the file has been
+     *         reached.
+     * @throws IOException
+     */
+    private ColumbusRecord readRecord() throws IOException {
+        while (lineReader.nextLine()) {
+            ++line;
+            int fields = tok.tokenize(lineReader.getBuffer(), lineReader.getLineStart(), lineReader.getLineEnd());
+            if (fields == 0 || line <= 1) {
+                continue;
+            }
+            try {
+                return parser.parse(tok);
+            } catch (IOException ex) {
+                throw new IOException("Error in line " + line + ": " + ex.getMessage(), ex);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of the line of the last record.
+     *
+     * @return
+     */
+    public int getLineNumber() {
+        return line;
+    }
+
+    /**
+     * Gets a sequential stream of the remaining records. The stream must be
+     * consumed before this reader is closed.
+     *
+     * @return
+     */
+    public Stream<ColumbusRecord> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+            Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * Passes all records of a file to the given consumer.
+     *
+     * @param file
+     *            The Columbus file to read.
+     * @param consumer
+     *            The consumer receiving the records in file order.
+     * @throws IOException
+     */
+    public static void readAll(File file, Consumer<? super ColumbusRecord> consumer) throws IOException {
+        try (ColumbusCSVRecordReader r = new ColumbusCSVRecordReader(file)) {
+            r.forEachRemaining(consumer);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lineReader.close();
+    }
+}
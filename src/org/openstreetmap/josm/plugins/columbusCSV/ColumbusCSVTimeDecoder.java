@@ -0,0 +1,134 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+/**
+ * Decodes the DATE (<tt>yyMMdd</tt>) and TIME (<tt>HHmmss</tt>) columns of a
+ * Columbus CSV file into seconds since the epoch. The V-900 logs in UTC, so no
+ * time zone is involved. Everything is done with integer arithmetic; since
+ * consecutive records almost always share the same date, the epoch day of the
+ * last date is cached.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public class ColumbusCSVTimeDecoder {
+    /**
+     * Returned by {@link #decode(ColumbusCSVTokenizer, int, int)} for invalid
+     * dates or times.
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+    /* The V-900 writes two-digit years */
+    private static final int CENTURY = 2000;
+
+    private int lastDate = -1;
+    private long lastEpochDay;
+
+    /**
+     * Decodes the date and time of the current line.
+     *
+     * @param csvLine
+     *            The tokenizer holding the current line.
+     * @param dateField
+     *            The index of the date column.
+     * @param timeField
+     *            The index of the time column.
+     * @return The seconds since the epoch or {@link #INVALID}, if either date
+     *         or time is invalid.
+     */
+    public long decode(ColumbusCSVTokenizer csvLine, int dateField, int timeField) {
+        int date = parseSixDigits(csvLine, dateField);
+        int time = parseSixDigits(csvLine, timeField);
+        if (date < 0 || time < 0) {
+            return INVALID;
+        }
+
+        if (date != lastDate) {
+            int year = CENTURY + date / 10000;
+            int month = date / 100 % 100;
+            int day = date % 100;
+            if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+                return INVALID;
+            }
+            lastEpochDay = toEpochDay(year, month, day);
+            lastDate = date;
+        }
+
+        int hour = time / 10000;
+        int minute = time / 100 % 100;
+        int second = time % 100;
+        if (hour > 23 || minute > 59 || second > 59) {
+            return INVALID;
+        }
+        return lastEpochDay * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second;
+    }
+
+    /**
+     * Parses a field consisting of exactly six digits.
+     *
+     * @return The value or -1, if the field is invalid.
+     */
+    private static int parseSixDigits(ColumbusCSVTokenizer csvLine, int field) {
+        if (csvLine.getFieldLength(field) != 6) {
+            return -1;
+        }
+        int val = 0;
+        for (int i = 0; i < 6; i++) {
+            int d = csvLine.byteAt(field, i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            val = val * 10 + d;
+        }
+        return val;
+    }
+
+    /**
+     * Gets the number of days of a month.
+     *
+     * @param year
+     *            The year.
+     * @param month
+     *            The month (1 - 12).
+     * @return
+     */
+    static int lengthOfMonth(int year, int month) {
+        switch (month) {
+        case 2:
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        case 4:
+        case 6:
+        case 9:
+        case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    /**
+     * Converts a date of the proleptic Gregorian calendar into the number of
+     * days since 1970-01-01.
+     *
+     * @param year
+     *            The year.
+     * @param month
+     *            The month (1 - 12).
+     * @param day
+     *            The day of month (1 - 31).
+     * @return
+     */
+    static long toEpochDay(int year, int month, int day) {
+        // shift the year start to March, so that the leap day is the last day
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,338 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits a single line of a Columbus CSV file into its fields without creating
+ * any objects. The tokenizer works directly on the raw bytes of the line and
+ * just records the start and end offset of each field in a reusable array, so
+ * one instance can be used for all lines of a file.
+ *
+ * Leading and trailing blanks (and NUL padding written by the V-900) are
+ * stripped from each field. Numbers can be parsed straight from the recorded
+ * slices; {@link #getString(int)} should only be used where a string is really
+ * needed.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public class ColumbusCSVTokenizer {
+    private static final byte SEPARATOR = ',';
+    /* Extended mode has 15 columns */
+    private static final int INITIAL_FIELDS = 16;
+    /* Powers of ten which are exactly representable as double */
+    private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6,
+        1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18 };
+    /* Max. number of significant digits which can be converted exactly */
+    private static final int MAX_DIGITS = 15;
+
+    private ByteBuffer buf;
+    private int[] bounds = new int[2 * INITIAL_FIELDS];
+    private int count;
+
+    /**
+     * Tokenizes the line contained in <code>buf</code> between
+     * <code>start</code> (inclusive) and <code>end</code> (exclusive). Lines
+     * which contain nothing but separators and blanks yield no fields at all.
+     *
+     * @param buf
+     *            The buffer containing the line. The buffer is referenced
+     *            until the next call of this method.
+     * @param start
+     *            Absolute offset of the first byte of the line.
+     * @param end
+     *            Absolute offset right behind the last byte of the line.
+     * @return The number of fields found.
+     */
+    public int tokenize(ByteBuffer buf, int start, int end) {
+        this.buf = buf;
+        count = 0;
+
+        boolean blank = true;
+        int fieldStart = start;
+        for (int i = start; i < end; i++) {
+            if (buf.get(i) == SEPARATOR) {
+                blank &= addField(fieldStart, i);
+                fieldStart = i + 1;
+            }
+        }
+        blank &= addField(fieldStart, end);
+
+        if (blank) {
+            count = 0;
+        }
+        return count;
+    }
+
+    /**
+     * Records a field and strips the surrounding blanks.
+     *
+     * @return true, if the field is empty.
+     */
+    private boolean addField(int start, int end) {
+        while (start < end && isBlank(buf.get(start))) {
+            start++;
+        }
+        while (end > start && isBlank(buf.get(end - 1))) {
+            end--;
+        }
+
+        int idx = 2 * count;
+        if (idx + 1 >= bounds.length) {
+            int[] tmp = new int[bounds.length * 2];
+            System.arraycopy(bounds, 0, tmp, 0, bounds.length);
+            bounds = tmp;
+        }
+        bounds[idx] = start;
+        bounds[idx + 1] = end;
+        count++;
+        return start == end;
+    }
+
+    private static boolean isBlank(byte b) {
+        return (b & 0xFF) <= ' ';
+    }
+
+    /**
+     * Gets the number of fields of the current line.
+     *
+     * @return
+     */
+    public int getFieldCount() {
+        return count;
+    }
+
+    /**
+     * Gets the absolute offset of the first byte of a field.
+     *
+     * @param field
+     *            The index of the field.
+     * @return
+     */
+    public int getFieldStart(int field) {
+        return bounds[2 * field];
+    }
+
+    /**
+     * Gets the absolute offset right behind the last byte of a field.
+     *
+     * @param field
+     *            The index of the field.
+     * @return
+     */
+    public int getFieldEnd(int field) {
+        return bounds[2 * field + 1];
+    }
+
+    /**
+     * Gets the length of a field in bytes.
+     *
+     * @param field
+     *            The index of the field.
+     * @return
+     */
+    public int getFieldLength(int field) {
+        return bounds[2 * field + 1] - bounds[2 * field];
+    }
+
+    /**
+     * Checks, if a field is empty.
+     *
+     * @param field
+     *            The index of the field.
+     * @return True, if the field contains no data.
+     */
+    public boolean isEmpty(int field) {
+        return getFieldLength(field) == 0;
+    }
+
+    /**
+     * Gets a single byte of a field.
+     *
+     * @param field
+     *            The index of the field.
+     * @param pos
+     *            The position relative to the start of the field.
+     * @return
+     */
+    public byte byteAt(int field, int pos) {
+        return buf.get(bounds[2 * field] + pos);
+    }
+
+    /**
+     * Checks, if a field consists of exactly the given character.
+     *
+     * @param field
+     *            The index of the field.
+     * @param c
+     *            The (ASCII) character to compare with.
+     * @return
+     */
+    public boolean fieldEquals(int field, char c) {
+        return getFieldLength(field) == 1 && buf.get(bounds[2 * field]) == c;
+    }
+
+    /**
+     * Gets the content of a field as string. This method allocates, so it
+     * should be used for rare fields only.
+     *
+     * @param field
+     *            The index of the field.
+     * @return
+     */
+    public String getString(int field) {
+        int start = bounds[2 * field];
+        int len = bounds[2 * field + 1] - start;
+        if (len == 0) {
+            return "";
+        }
+        byte[] tmp = new byte[len];
+        for (int i = 0; i < len; i++) {
+            tmp[i] = buf.get(start + i);
+        }
+        return new String(tmp, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses an integer from a field.
+     *
+     * @param field
+     *            The index of the field.
+     * @param defaultValue
+     *            The value to return, if the field contains no valid integer.
+     * @return
+     */
+    public int parseInt(int field, int defaultValue) {
+        int pos = bounds[2 * field];
+        int end = bounds[2 * field + 1];
+        if (pos == end) {
+            return defaultValue;
+        }
+
+        boolean neg = false;
+        byte b = buf.get(pos);
+        if (b == '-' || b == '+') {
+            neg = b == '-';
+            if (++pos == end) {
+                return defaultValue;
+            }
+        }
+
+        long val = 0;
+        for (; pos < end; pos++) {
+            int d = buf.get(pos) - '0';
+            if (d < 0 || d > 9) {
+                return defaultValue;
+            }
+            val = val * 10 + d;
+            if (val > Integer.MAX_VALUE) {
+                return defaultValue;
+            }
+        }
+        return (int) (neg ? -val : val);
+    }
+
+    /**
+     * Parses a decimal number (without exponent) from a field.
+     *
+     * @param field
+     *            The index of the field.
+     * @return The number or <code>Double.NaN</code>, if the field is empty or
+     *         contains no valid number.
+     */
+    public double parseDouble(int field) {
+        return parseDouble(field, 0);
+    }
+
+    /**
+     * Parses a decimal number (without exponent) from a field, ignoring some
+     * trailing bytes like a unit or hemisphere letter.
+     *
+     * @param field
+     *            The index of the field.
+     * @param skipTail
+     *            The number of trailing bytes to ignore.
+     * @return The number or <code>Double.NaN</code>, if the field is empty or
+     *         contains no valid number.
+     */
+    public double parseDouble(int field, int skipTail) {
+        int pos = bounds[2 * field];
+        int end = bounds[2 * field + 1] - skipTail;
+        if (pos >= end) {
+            return Double.NaN;
+        }
+
+        boolean neg = false;
+        byte b = buf.get(pos);
+        if (b == '-' || b == '+') {
+            neg = b == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0, significant = 0, scale = -1;
+        for (int i = pos; i < end; i++) {
+            b = buf.get(i);
+            if (b == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            int d = b - '0';
+            if (d < 0 || d > 9) {
+                return Double.NaN;
+            }
+            digits++;
+            if ((significant > 0 || d != 0) && ++significant > MAX_DIGITS) {
+                // too many digits for an exact conversion
+                return parseSlowly(pos, end, neg);
+            }
+            mantissa = mantissa * 10 + d;
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        if (scale >= POW10.length) {
+            return parseSlowly(pos, end, neg);
+        }
+        // a quotient of two exact doubles is rounded correctly
+        double val = scale > 0 ? mantissa / POW10[scale] : mantissa;
+        return neg ? -val : val;
+    }
+
+    /**
+     * Fallback for numbers which cannot be converted exactly by
+     * {@link #parseDouble(int, int)}.
+     */
+    private double parseSlowly(int start, int end, boolean neg) {
+        byte[] tmp = new byte[end - start];
+        for (int i = 0; i < tmp.length; i++) {
+            tmp[i] = buf.get(start + i);
+        }
+        try {
+            double val = Double.parseDouble(new String(tmp, StandardCharsets.US_ASCII));
+            return neg ? -val : val;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Parses a float number from a field.
+     *
+     * @param field
+     *            The index of the field.
+     * @return The number or <code>Float.NaN</code>, if the field is empty or
+     *         contains no valid number.
+     */
+    public float parseFloat(int field) {
+        return (float) parseDouble(field);
+    }
+}
@@ -3,9 +3,13 @@ package org.openstreetmap.josm.plugins.columbusCSV;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
+import java.awt.GraphicsEnvironment;
+
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.tools.Logging;
 
 /**
  * Utility functions. 
@@ -56,6 +60,23 @@ public class ColumbusCSVUtils {
         JOptionPane.showMessageDialog(MainApplication.getMainFrame(), tr(txt), caption, icon);
     }
     
+    /**
+     * Shows a message on the event dispatch thread without waiting for the
+     * user to close it. Without a display the message is logged only.
+     * @param txt Message to show
+     * @param caption Title of message box
+     * @param icon Icon to show (question, warning,...)
+     */
+    public static void showMessageLater(String txt, String caption, int icon) {
+        if (isStringNullOrEmpty(txt)) return;
+        
+        if (GraphicsEnvironment.isHeadless()) {
+            Logging.info(caption + ": " + txt);
+            return;
+        }
+        SwingUtilities.invokeLater(() -> showMessage(txt, caption, icon));
+    }
+    
     /**
      * Check, if a string is either null or empty.
      * 
@@ -70,9 +91,9 @@ public class ColumbusCSVUtils {
     /**
      * Parses a float number from a string.
      * @param txt float value as string
-     * @return The corresponding float instance or Float.NaN, if txt was empty or contained an invalid float number.
+     * @return The corresponding float or Float.NaN, if txt was empty or contained an invalid float number.
      */
-    public static Float floatFromString(String txt) {
+    public static float floatFromString(String txt) {
         if (isStringNullOrEmpty(txt)) return Float.NaN;
 
         try {
@@ -0,0 +1,435 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import org.openstreetmap.josm.plugins.columbusCSV.ColumbusCSVDiagnostics.Kind;
+
+/**
+ * Converts a Columbus CSV file into a GPX 1.1 file without creating any JOSM
+ * data structures. The XML is written straight from the records into a
+ * reusable byte buffer, so memory use is constant regardless of the size of
+ * the file:
+ *
+ * <pre>
+ * ColumbusGpxWriter w = new ColumbusGpxWriter(ColumbusCSVImportOptions.fromPreferences());
+ * ColumbusImportSummary summary = w.convert(csvFile, gpxFile);
+ * </pre>
+ *
+ * The GPX contains the same data as an import with {@link ColumbusCSVReader}
+ * followed by a GPX export: elevation, time, fix mode and DOPs (unless
+ * ignored), links to the audio files and the same track segments. As GPX
+ * requires all way points before the track, the CSV file is read twice;
+ * the second pass is usually served from the file system cache. Lost audio
+ * files are not rescued, since this requires all points in memory.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public class ColumbusGpxWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /* Max. number of bytes written by a single put without checking the buffer */
+    private static final int MAX_TOKEN_SIZE = 32;
+    private static final byte[] DIGITS = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    private final ColumbusCSVImportOptions options;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int pos;
+    private OutputStream out;
+
+    private ColumbusCSVDiagnostics diagnostics = new ColumbusCSVDiagnostics();
+    private ColumbusVoxIndex voxIndex;
+    private int wayPoints, trackPoints, audioPoints, missingAudio, rescuedAudio;
+
+    /**
+     * Creates a new writer.
+     *
+     * @param options
+     *            The options; DOPs and segmentation are applied like on
+     *            import.
+     */
+    public ColumbusGpxWriter(ColumbusCSVImportOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Converts a Columbus CSV file into a GPX file.
+     *
+     * @param csvFile
+     *            The Columbus file.
+     * @param gpxFile
+     *            The GPX file to write.
+     * @return The summary of the conversion.
+     * @throws IOException
+     */
+    public ColumbusImportSummary convert(File csvFile, File gpxFile) throws IOException {
+        try (OutputStream os = new FileOutputStream(gpxFile)) {
+            return convert(csvFile, os);
+        }
+    }
+
+    /**
+     * Converts a Columbus CSV file into GPX. The stream is not closed.
+     *
+     * @param csvFile
+     *            The Columbus file.
+     * @param os
+     *            The stream receiving the GPX.
+     * @return The summary of the conversion.
+     * @throws IOException
+     */
+    public ColumbusImportSummary convert(File csvFile, OutputStream os) throws IOException {
+        diagnostics = new ColumbusCSVDiagnostics();
+        voxIndex = new ColumbusVoxIndex(csvFile.getAbsoluteFile().getParentFile());
+        wayPoints = trackPoints = audioPoints = missingAudio = rescuedAudio = 0;
+        out = os;
+        pos = 0;
+        try {
+            put("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\" ?>\n");
+            put("<gpx version=\"1.1\" creator=\"JOSM ColumbusCSV plugin\" "
+                + "xmlns=\"http://www.topografix.com/GPX/1/1\" "
+                + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" "
+                + "xsi:schemaLocation=\"http://www.topografix.com/GPX/1/1 http://www.topografix.com/GPX/1/1/gpx.xsd\">\n");
+            put("  <metadata>\n    <desc>");
+            putEscaped(String.format("Converted by ColumbusCSV plugin from track file '%s'", csvFile.getName()));
+            put("</desc>\n  </metadata>\n");
+
+            // 1st pass: way points
+            try (ColumbusCSVRecordReader r = new ColumbusCSVRecordReader(csvFile)) {
+                for (int record = 1; r.hasNext(); record++) {
+                    ColumbusRecord rec = r.next();
+                    if (!isTrackPoint(rec)) {
+                        writePoint("wpt", "  ", rec, record);
+                        wayPoints++;
+                    }
+                }
+            }
+
+            // 2nd pass: track; the segmenter has to see all records
+            ColumbusTrackStatistics statistics = new ColumbusTrackStatistics();
+            ColumbusTrackSegmenter segmenter = options.splitTracks()
+                ? new ColumbusTrackSegmenter(options.segmentTimeGap(), options.segmentDistance()) : null;
+            try (ColumbusCSVRecordReader r = new ColumbusCSVRecordReader(csvFile)) {
+                for (int record = 1; r.hasNext(); record++) {
+                    ColumbusRecord rec = r.next();
+                    boolean isTrackPoint = isTrackPoint(rec);
+                    boolean segmentStart = segmenter != null && segmenter.isSegmentStart(rec.getIndex(),
+                        rec.getLatitude(), rec.getLongitude(), rec.getTime(), isTrackPoint);
+                    if (!isTrackPoint) {
+                        continue;
+                    }
+                    if (trackPoints == 0) {
+                        put("  <trk>\n    <trkseg>\n");
+                    } else if (segmentStart) {
+                        put("    </trkseg>\n    <trkseg>\n");
+                    }
+                    statistics.add(rec.getLatitude(), rec.getLongitude(), rec.getTime(), rec.getSpeed(),
+                        rec.getHeight(), segmentStart);
+                    writePoint("trkpt", "      ", rec, record);
+                    trackPoints++;
+                }
+            }
+            if (trackPoints > 0) {
+                put("    </trkseg>\n  </trk>\n");
+            }
+            put("</gpx>\n");
+            flush();
+            out.flush();
+            return new ColumbusImportSummary(wayPoints, trackPoints, audioPoints, missingAudio, rescuedAudio,
+                statistics);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Gets the warnings of the last conversion.
+     *
+     * @return
+     */
+    public ColumbusCSVDiagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Checks if a record becomes a track point. As on import, a record with a
+     * vox file is a way point in any case: a 'T' record becomes a way point
+     * with audio if the file exists, otherwise an ordinary way point.
+     *
+     * @param rec
+     *            The record.
+     * @return
+     * @see ColumbusCSVReader#createWayPoints
+     */
+    private static boolean isTrackPoint(ColumbusRecord rec) {
+        return rec.getTag() == 'T' && rec.getVoxFile() == null;
+    }
+
+    /**
+     * Writes a way point or track point element.
+     *
+     * @param element
+     *            The name of the element.
+     * @param indent
+     *            The indent of the element.
+     * @param rec
+     *            The record.
+     * @param record
+     *            The number of the record within the file for messages,
+     *            starting at 1 like on import.
+     * @throws IOException
+     */
+    private void writePoint(String element, String indent, ColumbusRecord rec, int record) throws IOException {
+        put(indent);
+        put("<");
+        put(element);
+        put(" lat=\"");
+        putMicroDegrees(rec.getLatitude());
+        put("\" lon=\"");
+        putMicroDegrees(rec.getLongitude());
+        put("\">\n");
+
+        if (rec.getHeight() != ColumbusRecord.NO_VALUE) {
+            putElement(indent, "ele");
+            putInt(rec.getHeight());
+            putEndElement("ele");
+        }
+        if (rec.hasTime()) {
+            putElement(indent, "time");
+            putTime(rec.getTime());
+            putEndElement("time");
+        } else {
+            diagnostics.report(Kind.INVALID_DATE, "Invalid date/time in record " + record);
+        }
+
+        String voxName = rec.getVoxFile();
+        if (voxName != null) {
+            String voxFile = voxName + ".wav";
+            File file = voxIndex.getFile(voxFile);
+            if (file != null) {
+                putTextElement(indent, "cmt", "Audio recording");
+                putTextElement(indent, "desc", voxFile);
+                put(indent);
+                put("  <link href=\"");
+                putEscaped(file.toURI().toASCIIString());
+                put("\">\n");
+                putTextElement(indent + "  ", "text", voxFile);
+                putTextElement(indent + "  ", "type", ColumbusCSVReader.AUDIO_WAV_LINK);
+                put(indent);
+                put("  </link>\n");
+                // counted like on import, depending on the tag
+                if (rec.getTag() == 'V') {
+                    audioPoints++;
+                } else {
+                    diagnostics.report(Kind.RESCUED_AUDIO, "Rescued unlinked audio file " + voxFile);
+                    if (rec.getTag() == 'C') {
+                        rescuedAudio++;
+                    }
+                }
+            } else {
+                String warnMsg = tr("Missing audio file") + ": " + voxFile;
+                diagnostics.report(Kind.MISSING_AUDIO, warnMsg);
+                putTextElement(indent, "cmt", warnMsg);
+                if (rec.getTag() == 'V') {
+                    missingAudio++;
+                }
+            }
+        }
+
+        if (rec.isExtended() && !options.ignoreDOP()) {
+            if (rec.getFixMode() != null) {
+                putTextElement(indent, "fix", rec.getFixMode());
+            }
+            // same order as required by GPX: hdop, vdop, pdop
+            putDop(indent, "hdop", rec.getHdop(), record);
+            putDop(indent, "vdop", rec.getVdop(), record);
+            putDop(indent, "pdop", rec.getPdop(), record);
+        }
+
+        put(indent);
+        put("</");
+        put(element);
+        put(">\n");
+    }
+
+    private void putDop(String indent, String element, float dop, int record) throws IOException {
+        if (Float.isNaN(dop)) {
+            diagnostics.report(Kind.INVALID_DOP, "Invalid " + element.toUpperCase() + " in record " + record);
+            return;
+        }
+        putElement(indent, element);
+        int tenths = Math.round(dop * 10);
+        if (tenths >= 0 && tenths / 10f == dop) {
+            putInt(tenths / 10);
+            put(".");
+            putInt(tenths % 10);
+        } else {
+            put(Float.toString(dop));
+        }
+        putEndElement(element);
+    }
+
+    private void putElement(String indent, String element) throws IOException {
+        put(indent);
+        put("  <");
+        put(element);
+        put(">");
+    }
+
+    private void putEndElement(String element) throws IOException {
+        put("</");
+        put(element);
+        put(">\n");
+    }
+
+    private void putTextElement(String indent, String element, String text) throws IOException {
+        putElement(indent, element);
+        putEscaped(text);
+        putEndElement(element);
+    }
+
+    /* Writes a coordinate in micro-degrees as decimal degrees with 6 digits */
+    private void putMicroDegrees(int value) throws IOException {
+        ensure(MAX_TOKEN_SIZE);
+        long v = value;
+        if (v < 0) {
+            buf[pos++] = '-';
+            v = -v;
+        }
+        putLong(v / ColumbusCSVCoordinateParser.MICRO_DEGREES);
+        buf[pos++] = '.';
+        int frac = (int) (v % ColumbusCSVCoordinateParser.MICRO_DEGREES);
+        for (int div = ColumbusCSVCoordinateParser.MICRO_DEGREES / 10; div > 0; div /= 10) {
+            buf[pos++] = DIGITS[frac / div % 10];
+        }
+    }
+
+    /* Writes a time in seconds since the epoch as xsd:dateTime in UTC */
+    private void putTime(long time) throws IOException {
+        long days = Math.floorDiv(time, 86400);
+        long secs = Math.floorMod(time, 86400);
+
+        // civil date from days since 1970-01-01 (proleptic Gregorian calendar)
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+
+        ensure(MAX_TOKEN_SIZE);
+        putLong(year);
+        buf[pos++] = '-';
+        put2(month);
+        buf[pos++] = '-';
+        put2(day);
+        buf[pos++] = 'T';
+        put2(secs / 3600);
+        buf[pos++] = ':';
+        put2(secs / 60 % 60);
+        buf[pos++] = ':';
+        put2(secs % 60);
+        buf[pos++] = 'Z';
+    }
+
+    private void put2(long value) {
+        buf[pos++] = DIGITS[(int) (value / 10)];
+        buf[pos++] = DIGITS[(int) (value % 10)];
+    }
+
+    private void putInt(int value) throws IOException {
+        ensure(MAX_TOKEN_SIZE);
+        if (value < 0) {
+            buf[pos++] = '-';
+            putLong(-(long) value);
+        } else {
+            putLong(value);
+        }
+    }
+
+    /* Writes a non-negative number; the caller has to ensure the space */
+    private void putLong(long value) {
+        int start = pos;
+        do {
+            buf[pos++] = DIGITS[(int) (value % 10)];
+            value /= 10;
+        } while (value > 0);
+        for (int i = start, j = pos - 1; i < j; i++, j--) {
+            byte t = buf[i];
+            buf[i] = buf[j];
+            buf[j] = t;
+        }
+    }
+
+    /* Writes ASCII markup */
+    private void put(String s) throws IOException {
+        int n = s.length();
+        for (int i = 0; i < n;) {
+            ensure(1);
+            int len = Math.min(n - i, buf.length - pos);
+            for (int k = 0; k < len; k++) {
+                buf[pos++] = (byte) s.charAt(i++);
+            }
+        }
+    }
+
+    /* Writes text content or an attribute value, encoded as UTF-8 */
+    private void putEscaped(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '&':
+                put("&amp;");
+                break;
+            case '<':
+                put("&lt;");
+                break;
+            case '>':
+                put("&gt;");
+                break;
+            case '"':
+                put("&quot;");
+                break;
+            default:
+                if (c < 0x80) {
+                    ensure(1);
+                    buf[pos++] = (byte) c;
+                } else {
+                    // rare: encode the remaining text at once (handles surrogate pairs)
+                    putEscapedUtf8(s.substring(i));
+                    return;
+                }
+            }
+        }
+    }
+
+    private void putEscapedUtf8(String s) throws IOException {
+        String escaped = s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+        byte[] bytes = escaped.getBytes(StandardCharsets.UTF_8);
+        flush();
+        out.write(bytes);
+    }
+
+    private void ensure(int n) throws IOException {
+        if (pos + n > buf.length) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+}
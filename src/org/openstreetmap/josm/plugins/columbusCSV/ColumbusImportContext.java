@@ -0,0 +1,322 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.data.gpx.WayPoint;
+
+/**
+ * The state of a single import by {@link ColumbusCSVReader}: options, the
+ * directory listing of the audio files, the imported points, counters and
+ * warnings. The reader itself keeps no state, so several threads can import
+ * concurrently with one reader as long as each import has its own context:
+ *
+ * <pre>
+ * ColumbusImportContext ctx = new ColumbusImportContext();
+ * GpxData gpx = reader.transformColumbusCSV(file, ctx.reset(options), monitor);
+ * ColumbusImportSummary summary = ctx.getImportSummary();
+ * </pre>
+ *
+ * A context can be reused (e.g. pooled per thread) by calling
+ * {@link #reset(ColumbusCSVImportOptions)} before the next import; the lists
+ * and scratch buffers are kept, unless they have grown beyond
+ * {@link #MAX_RETAINED_POINTS}, so that a pooled context does not pin the
+ * memory of a huge import. The results of an import are only valid until the
+ * context is reset. Instances are not thread-safe.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public final class ColumbusImportContext {
+    /**
+     * Max. number of points for which lists and scratch buffers are kept on
+     * reset.
+     */
+    public static final int MAX_RETAINED_POINTS = 1 << 20;
+
+    private ColumbusCSVImportOptions options;
+    private File file;
+    private volatile ColumbusVoxIndex voxIndex;
+    private ColumbusCSVDiagnostics diagnostics = new ColumbusCSVDiagnostics();
+    private ColumbusImportSummary summary;
+
+    private int dateConversionErrors;
+    private int dopConversionErrors;
+    private int firstVoxNumber = -1, lastVoxNumber = -1;
+
+    private final Map<String, WayPoint> voxFiles = new HashMap<>();
+    /* Track segments */
+    private final Collection<Collection<WayPoint>> allTrackPts = new ArrayList<>();
+    private List<WayPoint> allWpts = new ArrayList<>();
+
+    /* Scratch buffers for searching lost audio files by time */
+    private long[] times = new long[0];
+    private int[] timeIndex = new int[0];
+
+    /* State to continue the import of a growing file (see ColumbusCSVFollower) */
+    private long endOffset;
+    private ColumbusTrackSegmenter segmenter;
+    private WayPoint lastTrackPoint;
+
+    /**
+     * Prepares the context for the next import. All results of the previous
+     * import are dropped.
+     *
+     * @param options
+     *            The options of the next import.
+     * @return This context.
+     */
+    public ColumbusImportContext reset(ColumbusCSVImportOptions options) {
+        this.options = options;
+        clear();
+        file = null;
+        voxIndex = null;
+        diagnostics = new ColumbusCSVDiagnostics();
+        summary = null;
+        dateConversionErrors = 0;
+        dopConversionErrors = 0;
+        firstVoxNumber = lastVoxNumber = -1;
+        endOffset = 0;
+        segmenter = null;
+        lastTrackPoint = null;
+        return this;
+    }
+
+    /**
+     * Drops the imported points, so that they can be garbage collected while
+     * the context is kept. Options, counters and the summary are kept.
+     */
+    public void clear() {
+        allTrackPts.clear();
+        voxFiles.clear();
+        if (allWpts.size() > MAX_RETAINED_POINTS) {
+            allWpts = new ArrayList<>();
+        } else {
+            allWpts.clear();
+        }
+        if (times.length > MAX_RETAINED_POINTS) {
+            times = new long[0];
+            timeIndex = new int[0];
+        }
+    }
+
+    /**
+     * Starts the import of a file. Results of a previous import are dropped,
+     * even if the context has not been reset.
+     *
+     * @param file
+     *            The Columbus file.
+     */
+    void begin(File file) {
+        reset(options);
+        this.file = file;
+        voxIndex = new ColumbusVoxIndex(file.getAbsoluteFile().getParentFile());
+        firstVoxNumber = Integer.MAX_VALUE;
+        lastVoxNumber = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Adds the counters and vox files of a parsed chunk.
+     *
+     * @param chunk
+     *            The chunk.
+     */
+    void merge(ColumbusCSVChunk chunk) {
+        dateConversionErrors += chunk.dateConversionErrors;
+        dopConversionErrors += chunk.dopConversionErrors;
+        firstVoxNumber = Math.min(firstVoxNumber, chunk.firstVoxNumber);
+        lastVoxNumber = Math.max(lastVoxNumber, chunk.lastVoxNumber);
+        voxFiles.putAll(chunk.voxFiles);
+    }
+
+    /**
+     * Finishes merging the chunks.
+     */
+    void endMerge() {
+        if (firstVoxNumber > lastVoxNumber) { // no vox files at all
+            firstVoxNumber = lastVoxNumber = -1;
+        }
+    }
+
+    /**
+     * Gets a scratch buffer for time stamps.
+     *
+     * @param n
+     *            The min. size.
+     * @return
+     */
+    long[] getTimes(int n) {
+        if (times.length < n) {
+            times = new long[n];
+        }
+        return times;
+    }
+
+    /**
+     * Gets a scratch buffer for point indices.
+     *
+     * @param n
+     *            The min. size.
+     * @return
+     */
+    int[] getTimeIndex(int n) {
+        if (timeIndex.length < n) {
+            timeIndex = new int[n];
+        }
+        return timeIndex;
+    }
+
+    void setSummary(ColumbusImportSummary summary) {
+        this.summary = summary;
+    }
+
+    /**
+     * Records where the import has stopped, so that it can be continued when
+     * the file grows.
+     *
+     * @param endOffset
+     *            The number of bytes imported.
+     * @param segmenter
+     *            The segmenter holding the last track point or null, if
+     *            tracks are not split.
+     * @param lastTrackPoint
+     *            The last track point or null, if there is none.
+     */
+    void setEnd(long endOffset, ColumbusTrackSegmenter segmenter, WayPoint lastTrackPoint) {
+        this.endOffset = endOffset;
+        this.segmenter = segmenter;
+        this.lastTrackPoint = lastTrackPoint;
+    }
+
+    long getEndOffset() {
+        return endOffset;
+    }
+
+    ColumbusTrackSegmenter getSegmenter() {
+        return segmenter;
+    }
+
+    WayPoint getLastTrackPoint() {
+        return lastTrackPoint;
+    }
+
+    Collection<Collection<WayPoint>> getTrackSegments() {
+        return allTrackPts;
+    }
+
+    ColumbusVoxIndex getVoxIndex() {
+        return voxIndex;
+    }
+
+    /**
+     * Lists the directory of the import again, e.g. to find audio files
+     * recorded after the import of a followed file.
+     */
+    void refreshVoxIndex() {
+        voxIndex = new ColumbusVoxIndex(file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Gets the options of the import.
+     *
+     * @return
+     */
+    public ColumbusCSVImportOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Gets the imported file.
+     *
+     * @return The file or null, if no import has been started.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the import directory.
+     *
+     * @return
+     */
+    public String getWorkingDirOfImport() {
+        return file != null ? file.getParent() : null;
+    }
+
+    /**
+     * Gets the warnings of the import.
+     *
+     * @return
+     */
+    public ColumbusCSVDiagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * Gets the summary and track statistics of the import.
+     *
+     * @return The summary or null, if the import has not been completed.
+     */
+    public ColumbusImportSummary getImportSummary() {
+        return summary;
+    }
+
+    /**
+     * Return the number of date conversion errors.
+     *
+     * @return
+     */
+    public int getNumberOfDateConversionErrors() {
+        return dateConversionErrors;
+    }
+
+    /**
+     * Return the number of pdop/vdop/hdop conversion errors.
+     *
+     * @return
+     */
+    public int getNumberOfDOPConversionErrors() {
+        return dopConversionErrors;
+    }
+
+    /**
+     * Gets the number of first vox file.
+     *
+     * @return
+     */
+    public int getFirstVoxNumber() {
+        return firstVoxNumber;
+    }
+
+    /**
+     * Gets the number of last vox file.
+     *
+     * @return
+     */
+    public int getLastVoxNumber() {
+        return lastVoxNumber;
+    }
+
+    /**
+     * Gets the map containing the vox files with their associated way point.
+     *
+     * @return
+     */
+    public Map<String, WayPoint> getVoxFileMap() {
+        return voxFiles;
+    }
+
+    /**
+     * Gets the list containing all imported track and way points.
+     *
+     * @return
+     */
+    public List<WayPoint> getAllWayPoints() {
+        return allWpts;
+    }
+}
@@ -0,0 +1,125 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+/**
+ * Result of an import: the number of imported points and audio files and the
+ * statistics of the track.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public final class ColumbusImportSummary {
+    private final int wayPoints;
+    private final int trackPoints;
+    private final int audioPoints;
+    private final int missingAudio;
+    private final int rescuedAudio;
+    private final ColumbusTrackStatistics statistics;
+
+    ColumbusImportSummary(int wayPoints, int trackPoints, int audioPoints, int missingAudio, int rescuedAudio,
+        ColumbusTrackStatistics statistics) {
+        this.wayPoints = wayPoints;
+        this.trackPoints = trackPoints;
+        this.audioPoints = audioPoints;
+        this.missingAudio = missingAudio;
+        this.rescuedAudio = rescuedAudio;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Gets the number of way points (not part of the track).
+     *
+     * @return
+     */
+    public int getWayPoints() {
+        return wayPoints;
+    }
+
+    /**
+     * Gets the number of track points.
+     *
+     * @return
+     */
+    public int getTrackPoints() {
+        return trackPoints;
+    }
+
+    /**
+     * Gets the number of way points with an audio file.
+     *
+     * @return
+     */
+    public int getAudioPoints() {
+        return audioPoints;
+    }
+
+    /**
+     * Gets the number of audio files which could not be found.
+     *
+     * @return
+     */
+    public int getMissingAudio() {
+        return missingAudio;
+    }
+
+    /**
+     * Gets the number of audio files not referenced by any record, which
+     * have been linked to a way point.
+     *
+     * @return
+     */
+    public int getRescuedAudio() {
+        return rescuedAudio;
+    }
+
+    /**
+     * Gets the statistics of the track.
+     *
+     * @return
+     */
+    public ColumbusTrackStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Gets the (translated) text shown after the import.
+     *
+     * @return
+     */
+    public String getMessage() {
+        StringBuilder sb = new StringBuilder(tr(String.format(
+            "Imported %d track points and %d way points (%d with audio, %d rescued).",
+            trackPoints, wayPoints, audioPoints, rescuedAudio)));
+        if (statistics.getPointCount() > 1) {
+            sb.append(String.format("%n"));
+            sb.append(tr(String.format("Distance: %.2f km in %s (moving), avg. %.1f km/h, max. %d km/h.",
+                statistics.getDistance() / 1000, formatDuration(statistics.getMovingTime()),
+                statistics.getAverageSpeed(), statistics.getMaxSpeed())));
+            if (statistics.getMinElevation() != ColumbusRecord.NO_VALUE) {
+                sb.append(String.format("%n"));
+                sb.append(tr(String.format("Elevation: %d - %d m, %.0f m up, %.0f m down.",
+                    statistics.getMinElevation(), statistics.getMaxElevation(),
+                    statistics.getElevationGain(), statistics.getElevationLoss())));
+            }
+        }
+        if (missingAudio > 0) {
+            sb.append(String.format("%n"));
+            sb.append(tr(String.format("Note: %d audio files could not be found, please check marker comments!",
+                missingAudio)));
+        }
+        return sb.toString();
+    }
+
+    private static String formatDuration(long seconds) {
+        return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    @Override
+    public String toString() {
+        return "ColumbusImportSummary [wayPoints=" + wayPoints + ", trackPoints=" + trackPoints + ", audioPoints="
+            + audioPoints + ", missingAudio=" + missingAudio + ", rescuedAudio=" + rescuedAudio + ", statistics="
+            + statistics + "]";
+    }
+}
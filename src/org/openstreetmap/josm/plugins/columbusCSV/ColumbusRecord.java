@@ -0,0 +1,212 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+/**
+ * A single typed record (line) of a Columbus CSV file. Coordinates are kept
+ * in micro-degrees and the time in seconds since the epoch, so a record can be
+ * processed without any JOSM data structures.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public final class ColumbusRecord {
+    /**
+     * Value of integer columns which are empty or invalid.
+     */
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+    /**
+     * Value of {@link #getTime()}, if the record has no valid date/time.
+     */
+    public static final long NO_TIME = ColumbusCSVTimeDecoder.INVALID;
+
+    private final int index;
+    private final char tag;
+    private final long time;
+    private final int lat, lon;
+    private final int height, speed, heading;
+    private final boolean extended;
+    private final String fixMode;
+    private final float pdop, hdop, vdop;
+    private final String voxFile;
+
+    ColumbusRecord(int index, char tag, long time, int lat, int lon, int height, int speed, int heading,
+        boolean extended, String fixMode, float pdop, float hdop, float vdop, String voxFile) {
+        this.index = index;
+        this.tag = tag;
+        this.time = time;
+        this.lat = lat;
+        this.lon = lon;
+        this.height = height;
+        this.speed = speed;
+        this.heading = heading;
+        this.extended = extended;
+        this.fixMode = fixMode;
+        this.pdop = pdop;
+        this.hdop = hdop;
+        this.vdop = vdop;
+        this.voxFile = voxFile;
+    }
+
+    /**
+     * Gets the running number of the record (INDEX column).
+     *
+     * @return
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Gets the tag of the record: <tt>T</tt> for track points, <tt>C</tt> for
+     * way points and <tt>V</tt> for way points with voice recording.
+     *
+     * @return
+     */
+    public char getTag() {
+        return tag;
+    }
+
+    /**
+     * Gets the time of the record in seconds since the epoch (UTC).
+     *
+     * @return The time or {@link #NO_TIME}.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Checks, if the record has a valid date/time.
+     *
+     * @return
+     */
+    public boolean hasTime() {
+        return time != NO_TIME;
+    }
+
+    /**
+     * Gets the latitude in micro-degrees.
+     *
+     * @return
+     */
+    public int getLatitude() {
+        return lat;
+    }
+
+    /**
+     * Gets the longitude in micro-degrees.
+     *
+     * @return
+     */
+    public int getLongitude() {
+        return lon;
+    }
+
+    /**
+     * Gets the latitude in degrees.
+     *
+     * @return
+     */
+    public double lat() {
+        return ColumbusCSVCoordinateParser.toDegrees(lat);
+    }
+
+    /**
+     * Gets the longitude in degrees.
+     *
+     * @return
+     */
+    public double lon() {
+        return ColumbusCSVCoordinateParser.toDegrees(lon);
+    }
+
+    /**
+     * Gets the elevation height in meters.
+     *
+     * @return The height or {@link #NO_VALUE}.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the speed in km/h.
+     *
+     * @return The speed or {@link #NO_VALUE}.
+     */
+    public int getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Gets the heading in degrees.
+     *
+     * @return The heading or {@link #NO_VALUE}.
+     */
+    public int getHeading() {
+        return heading;
+    }
+
+    /**
+     * Checks, if the record has been written in extended (professional) mode.
+     *
+     * @return
+     */
+    public boolean isExtended() {
+        return extended;
+    }
+
+    /**
+     * Gets the fix mode in lower case (<tt>2d</tt>, <tt>3d</tt>).
+     *
+     * @return The fix mode or null, if not in extended mode.
+     */
+    public String getFixMode() {
+        return fixMode;
+    }
+
+    /**
+     * Gets the position dilution of precision.
+     *
+     * @return The pdop or <code>Float.NaN</code>.
+     */
+    public float getPdop() {
+        return pdop;
+    }
+
+    /**
+     * Gets the horizontal dilution of precision.
+     *
+     * @return The hdop or <code>Float.NaN</code>.
+     */
+    public float getHdop() {
+        return hdop;
+    }
+
+    /**
+     * Gets the vertical dilution of precision.
+     *
+     * @return The vdop or <code>Float.NaN</code>.
+     */
+    public float getVdop() {
+        return vdop;
+    }
+
+    /**
+     * Gets the name of the voice recording without extension, e. g.
+     * <tt>VOX00012</tt>.
+     *
+     * @return The name or null, if the record has no voice recording.
+     */
+    public String getVoxFile() {
+        return voxFile;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumbusRecord [index=" + index + ", tag=" + tag + ", time=" + time + ", lat=" + lat
+            + ", lon=" + lon + ", height=" + height + ", speed=" + speed + ", heading=" + heading
+            + ", fixMode=" + fixMode + ", pdop=" + pdop + ", hdop=" + hdop + ", vdop=" + vdop
+            + ", voxFile=" + voxFile + "]";
+    }
+}
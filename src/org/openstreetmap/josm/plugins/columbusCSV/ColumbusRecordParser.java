@@ -0,0 +1,98 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.io.IOException;
+
+/**
+ * Converts a tokenized line of a Columbus CSV file into a
+ * {@link ColumbusRecord}. This class supports as well the simple as the
+ * extended mode:
+ *
+ * <pre>
+ * INDEX,TAG,DATE,TIME,LATITUDE N/S,LONGITUDE E/W,HEIGHT,SPEED,HEADING,VOX
+ * INDEX,TAG,DATE,TIME,LATITUDE N/S,LONGITUDE E/W,HEIGHT,SPEED,HEADING,FIX MODE,VALID,PDOP,HDOP,VDOP,VOX
+ * </pre>
+ *
+ * Instances are not thread-safe, since they cache the last decoded date.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public class ColumbusRecordParser {
+    /* Number of columns in simple and extended mode */
+    private static final int SIMPLE_COLUMNS = 10;
+    private static final int EXTENDED_COLUMNS = 15;
+
+    private final ColumbusCSVTimeDecoder timeDecoder = new ColumbusCSVTimeDecoder();
+
+    /**
+     * Parses the current line of the tokenizer.
+     *
+     * @param csvLine
+     *            The tokenizer holding the columns of a single CSV line.
+     * @return The corresponding record.
+     * @throws IOException
+     *             if the line has an invalid number of columns or an invalid
+     *             position. Invalid date/time, height or DOP values do not
+     *             fail, but are reported by the respective placeholder value.
+     */
+    public ColumbusRecord parse(ColumbusCSVTokenizer csvLine) throws IOException {
+        int n = csvLine.getFieldCount();
+        if (n != SIMPLE_COLUMNS && n != EXTENDED_COLUMNS)
+            throw new IOException("Invalid number of tokens: " + n);
+        boolean isExtMode = n == EXTENDED_COLUMNS;
+
+        int lat = ColumbusCSVCoordinateParser.parseLatitude(csvLine, 4);
+        if (lat == ColumbusCSVCoordinateParser.INVALID) {
+            throw new IOException("Invalid latitude: " + csvLine.getString(4));
+        }
+        int lon = ColumbusCSVCoordinateParser.parseLongitude(csvLine, 5);
+        if (lon == ColumbusCSVCoordinateParser.INVALID) {
+            throw new IOException("Invalid longitude: " + csvLine.getString(5));
+        }
+
+        char tag = csvLine.isEmpty(1) ? ' ' : (char) csvLine.byteAt(1, 0);
+        long time = timeDecoder.decode(csvLine, 2, 3);
+
+        int height = csvLine.parseInt(6, ColumbusRecord.NO_VALUE);
+        int speed = csvLine.parseInt(7, ColumbusRecord.NO_VALUE);
+        int heading = csvLine.parseInt(8, ColumbusRecord.NO_VALUE);
+
+        String fixMode = null;
+        float pdop = Float.NaN, hdop = Float.NaN, vdop = Float.NaN;
+        if (isExtMode) {
+            fixMode = getFixMode(csvLine, 9);
+            pdop = csvLine.parseFloat(11);
+            hdop = csvLine.parseFloat(12);
+            vdop = csvLine.parseFloat(13);
+        }
+
+        int voxField = isExtMode ? 14 : 9;
+        String voxFile = csvLine.isEmpty(voxField) ? null : csvLine.getString(voxField);
+
+        return new ColumbusRecord(csvLine.parseInt(0, ColumbusRecord.NO_VALUE), tag, time, lat, lon,
+            height, speed, heading, isExtMode, fixMode, pdop, hdop, vdop, voxFile);
+    }
+
+    /**
+     * Gets the fix mode in lower case. The usual values <tt>2D</tt> and
+     * <tt>3D</tt> are mapped to constants.
+     *
+     * @param csvLine
+     * @param field
+     * @return
+     */
+    private static String getFixMode(ColumbusCSVTokenizer csvLine, int field) {
+        if (csvLine.getFieldLength(field) == 2 && (csvLine.byteAt(field, 1) | 0x20) == 'd') {
+            switch (csvLine.byteAt(field, 0)) {
+            case '2':
+                return "2d";
+            case '3':
+                return "3d";
+            default:
+                break;
+            }
+        }
+        return csvLine.getString(field).toLowerCase();
+    }
+}
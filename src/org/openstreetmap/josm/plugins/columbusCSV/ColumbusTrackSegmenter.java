@@ -0,0 +1,118 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+/**
+ * Decides while reading the records in file order, where a new track segment
+ * starts. A segment ends, if the time gap or the distance between two
+ * consecutive track points exceeds the given thresholds or if the INDEX
+ * column restarts (e.g. after the device has been switched off or when logs
+ * have been concatenated).
+ *
+ * The distance threshold applies per second between the two points, i.e. it
+ * is a max. speed. Otherwise files logged at long intervals (e.g. by the
+ * timer of the spy mode) while driving fast would be split at almost every
+ * point, and single point segments are not drawn at all.
+ *
+ * Distances are approximated by an equirectangular projection, which is
+ * accurate enough for comparing consecutive points against a threshold.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+class ColumbusTrackSegmenter {
+    /* Mean earth radius in meters times one micro-degree in radians */
+    private static final double METERS_PER_MICRO_DEGREE = 6371008.8 * Math.PI / 180 / ColumbusCSVCoordinateParser.MICRO_DEGREES;
+
+    private final long maxTimeGap;
+    private final double maxDistancePerSecondSq;
+
+    private int lastIndex = ColumbusRecord.NO_VALUE;
+    private boolean indexReset;
+    private boolean hasLastPoint;
+    private int lastLat, lastLon;
+    private long lastTime;
+
+    /**
+     * Creates a new segmenter.
+     *
+     * @param maxTimeGap
+     *            The time gap in seconds starting a new segment; 0 disables
+     *            splitting by time.
+     * @param maxDistance
+     *            The distance in meters per second between two points
+     *            starting a new segment; 0 disables splitting by distance.
+     */
+    ColumbusTrackSegmenter(int maxTimeGap, int maxDistance) {
+        this.maxTimeGap = maxTimeGap > 0 ? maxTimeGap : Long.MAX_VALUE;
+        this.maxDistancePerSecondSq = maxDistance > 0 ? (double) maxDistance * maxDistance
+            : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Checks, if a record starts a new segment. Must be called for all
+     * records (not only track points) in file order.
+     *
+     * @param store
+     *            The records.
+     * @param i
+     *            The number of the record.
+     * @param isTrackPoint
+     *            true, if the record is a track point.
+     * @return true, if the record is a track point starting a new segment.
+     */
+    boolean isSegmentStart(ColumbusTrackStore store, int i, boolean isTrackPoint) {
+        return isSegmentStart(store.getIndex(i), store.getLatitude(i), store.getLongitude(i), store.getTime(i),
+            isTrackPoint);
+    }
+
+    /**
+     * Checks, if a record starts a new segment. Must be called for all
+     * records (not only track points) in file order.
+     *
+     * @param index
+     *            The INDEX column or {@link ColumbusRecord#NO_VALUE}.
+     * @param lat
+     *            The latitude in micro-degrees.
+     * @param lon
+     *            The longitude in micro-degrees.
+     * @param time
+     *            The time in seconds or {@link ColumbusRecord#NO_TIME}.
+     * @param isTrackPoint
+     *            true, if the record is a track point.
+     * @return true, if the record is a track point starting a new segment.
+     */
+    boolean isSegmentStart(int index, int lat, int lon, long time, boolean isTrackPoint) {
+        if (index != ColumbusRecord.NO_VALUE) {
+            if (lastIndex != ColumbusRecord.NO_VALUE && index <= lastIndex) {
+                indexReset = true;
+            }
+            lastIndex = index;
+        }
+        if (!isTrackPoint) {
+            return false;
+        }
+
+        boolean res = false;
+        if (hasLastPoint) {
+            res = indexReset;
+            // points without time count as one second apart
+            long seconds = 1;
+            if (time != ColumbusRecord.NO_TIME && lastTime != ColumbusRecord.NO_TIME) {
+                seconds = Math.max(1, Math.abs(time - lastTime));
+                res |= seconds > maxTimeGap;
+            }
+            if (!res && maxDistancePerSecondSq != Double.POSITIVE_INFINITY) {
+                double cos = Math.cos(Math.toRadians(ColumbusCSVCoordinateParser.toDegrees(lat)));
+                double dy = (lat - lastLat) * METERS_PER_MICRO_DEGREE;
+                double dx = (lon - lastLon) * METERS_PER_MICRO_DEGREE * cos;
+                res = dx * dx + dy * dy > maxDistancePerSecondSq * seconds * seconds;
+            }
+        }
+        indexReset = false;
+        hasLastPoint = true;
+        lastLat = lat;
+        lastLon = lon;
+        lastTime = time;
+        return res;
+    }
+}
@@ -0,0 +1,371 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.openstreetmap.josm.data.gpx.WayPoint;
+
+/**
+ * Reduces the number of points of a track while keeping its shape. Two
+ * algorithms are supported, both working on primitive coordinate arrays in
+ * meters:
+ * <ul>
+ * <li>Douglas-Peucker keeps all points deviating more than a given distance
+ * from the simplified line. It uses an explicit stack or, if the number of
+ * points is limited, a priority queue of the sub-ranges with the largest
+ * error.
+ * <li>Visvalingam-Whyatt repeatedly removes the point spanning the smallest
+ * triangle with its neighbours, using a binary heap.
+ * </ul>
+ * Both can be bounded by a maximum error and/or a maximum number of points.
+ * The first and last point are always kept.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public final class ColumbusTrackSimplifier {
+    /**
+     * The simplification algorithms.
+     */
+    public enum Method {
+        /** No simplification */
+        NONE,
+        /** Douglas-Peucker (max. perpendicular distance) */
+        DOUGLAS_PEUCKER,
+        /** Visvalingam-Whyatt (min. effective area) */
+        VISVALINGAM_WHYATT
+    }
+
+    /* Mean earth radius in meters times one degree in radians */
+    private static final double METERS_PER_DEGREE = 6371008.8 * Math.PI / 180;
+
+    private ColumbusTrackSimplifier() {
+        // Private constructor for the utility class.
+    }
+
+    /**
+     * Simplifies a list of way points.
+     *
+     * @param wpts
+     *            The way points of a track segment.
+     * @param method
+     *            The algorithm to use.
+     * @param maxError
+     *            The max. error in meters; for Visvalingam-Whyatt points
+     *            with an effective area below <code>maxError^2</code> are
+     *            removed. 0 to limit the number of points only.
+     * @param maxPoints
+     *            The max. number of points to keep; 0 for no limit.
+     * @return The simplified list or the given list, if nothing has been
+     *         removed.
+     */
+    public static List<WayPoint> simplify(List<WayPoint> wpts, Method method, double maxError, int maxPoints) {
+        int n = wpts.size();
+        if (method == Method.NONE || n <= 2) {
+            return wpts;
+        }
+
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double cos = Math.cos(Math.toRadians(wpts.get(0).lat()));
+        for (int i = 0; i < n; i++) {
+            WayPoint wpt = wpts.get(i);
+            x[i] = wpt.lon() * METERS_PER_DEGREE * cos;
+            y[i] = wpt.lat() * METERS_PER_DEGREE;
+        }
+
+        int[] keep = method == Method.DOUGLAS_PEUCKER
+            ? douglasPeucker(x, y, n, maxError, maxPoints)
+            : visvalingamWhyatt(x, y, n, maxError * maxError, maxPoints);
+        if (keep.length == n) {
+            return wpts;
+        }
+        List<WayPoint> res = new ArrayList<>(keep.length);
+        for (int i : keep) {
+            res.add(wpts.get(i));
+        }
+        return res;
+    }
+
+    /**
+     * Simplifies a line with the Douglas-Peucker algorithm.
+     *
+     * @param x
+     *            The x coordinates in meters.
+     * @param y
+     *            The y coordinates in meters.
+     * @param n
+     *            The number of points.
+     * @param maxError
+     *            Points closer than this distance to the simplified line are
+     *            removed; 0 to limit the number of points only.
+     * @param maxPoints
+     *            The max. number of points to keep; 0 for no limit.
+     * @return The indices of the kept points in ascending order.
+     */
+    public static int[] douglasPeucker(double[] x, double[] y, int n, double maxError, int maxPoints) {
+        if (n <= 2) {
+            return range(n);
+        }
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        int kept = 2;
+        int limit = maxPoints > 0 ? Math.max(maxPoints, 2) : n;
+
+        if (limit >= n) {
+            // Error bound only: process the ranges in any order
+            int[] stack = new int[64];
+            int sp = 0;
+            stack[sp++] = 0;
+            stack[sp++] = n - 1;
+            while (sp > 0) {
+                int last = stack[--sp];
+                int first = stack[--sp];
+                int idx = findFarthest(x, y, first, last);
+                if (idx < 0 || distance(x, y, first, last, idx) <= maxError) {
+                    continue;
+                }
+                keep[idx] = true;
+                kept++;
+                if (sp + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[sp++] = first;
+                stack[sp++] = idx;
+                stack[sp++] = idx;
+                stack[sp++] = last;
+            }
+        } else {
+            // Point limit: always split the range with the largest error first
+            PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(b[0], a[0]));
+            offer(queue, x, y, 0, n - 1);
+            while (kept < limit && !queue.isEmpty()) {
+                double[] r = queue.poll();
+                if (r[0] <= maxError) {
+                    break;
+                }
+                int first = (int) r[1], last = (int) r[2], idx = (int) r[3];
+                keep[idx] = true;
+                kept++;
+                offer(queue, x, y, first, idx);
+                offer(queue, x, y, idx, last);
+            }
+        }
+        return indices(keep, kept);
+    }
+
+    private static void offer(PriorityQueue<double[]> queue, double[] x, double[] y, int first, int last) {
+        int idx = findFarthest(x, y, first, last);
+        if (idx >= 0) {
+            queue.add(new double[] {distance(x, y, first, last, idx), first, last, idx});
+        }
+    }
+
+    /**
+     * Finds the point between first and last (exclusive) with the largest
+     * distance to the line first-last.
+     *
+     * @return The index of the point or -1, if there is no point in between.
+     */
+    private static int findFarthest(double[] x, double[] y, int first, int last) {
+        int idx = -1;
+        double max = -1;
+        double dx = x[last] - x[first], dy = y[last] - y[first];
+        double len2 = dx * dx + dy * dy;
+        for (int i = first + 1; i < last; i++) {
+            double d = distance2(x, y, first, dx, dy, len2, i);
+            if (d > max) {
+                max = d;
+                idx = i;
+            }
+        }
+        return idx;
+    }
+
+    private static double distance(double[] x, double[] y, int first, int last, int i) {
+        double dx = x[last] - x[first], dy = y[last] - y[first];
+        return Math.sqrt(distance2(x, y, first, dx, dy, dx * dx + dy * dy, i));
+    }
+
+    /* Squared distance of point i to the segment starting at first */
+    private static double distance2(double[] x, double[] y, int first, double dx, double dy, double len2, int i) {
+        double px = x[i] - x[first], py = y[i] - y[first];
+        if (len2 == 0) {
+            return px * px + py * py;
+        }
+        double t = Math.max(0, Math.min(1, (px * dx + py * dy) / len2));
+        double ex = px - t * dx, ey = py - t * dy;
+        return ex * ex + ey * ey;
+    }
+
+    /**
+     * Simplifies a line with the Visvalingam-Whyatt algorithm.
+     *
+     * @param x
+     *            The x coordinates in meters.
+     * @param y
+     *            The y coordinates in meters.
+     * @param n
+     *            The number of points.
+     * @param minArea
+     *            Points with an effective area (in m^2) below this value are
+     *            removed; 0 to limit the number of points only.
+     * @param maxPoints
+     *            The max. number of points to keep; 0 for no limit.
+     * @return The indices of the kept points in ascending order.
+     */
+    public static int[] visvalingamWhyatt(double[] x, double[] y, int n, double minArea, int maxPoints) {
+        if (n <= 2) {
+            return range(n);
+        }
+        int limit = maxPoints > 0 ? Math.max(maxPoints, 2) : n;
+        int[] prev = new int[n];
+        int[] next = new int[n];
+        AreaHeap heap = new AreaHeap(n);
+        for (int i = 1; i < n - 1; i++) {
+            prev[i] = i - 1;
+            next[i] = i + 1;
+            heap.add(i, area(x, y, i - 1, i, i + 1));
+        }
+
+        boolean[] keep = new boolean[n];
+        Arrays.fill(keep, true);
+        int kept = n;
+        double maxRemoved = 0;
+        while (!heap.isEmpty()) {
+            double a = Math.max(heap.minKey(), maxRemoved);
+            if (a >= minArea && kept <= limit) {
+                break;
+            }
+            int i = heap.poll();
+            // effective area never decreases, so removed points stay removed
+            maxRemoved = a;
+            keep[i] = false;
+            kept--;
+
+            int p = prev[i], q = next[i];
+            next[p] = q;
+            prev[q] = p;
+            if (p > 0) {
+                heap.update(p, area(x, y, prev[p], p, q));
+            }
+            if (q < n - 1) {
+                heap.update(q, area(x, y, p, q, next[q]));
+            }
+        }
+        return indices(keep, kept);
+    }
+
+    private static double area(double[] x, double[] y, int a, int b, int c) {
+        return Math.abs((x[b] - x[a]) * (y[c] - y[a]) - (x[c] - x[a]) * (y[b] - y[a])) / 2;
+    }
+
+    private static int[] range(int n) {
+        int[] res = new int[n];
+        for (int i = 0; i < n; i++) {
+            res[i] = i;
+        }
+        return res;
+    }
+
+    private static int[] indices(boolean[] keep, int kept) {
+        int[] res = new int[kept];
+        int k = 0;
+        for (int i = 0; i < keep.length; i++) {
+            if (keep[i]) {
+                res[k++] = i;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Binary min-heap of point indices keyed by area, supporting updates of
+     * the key of a point.
+     */
+    private static final class AreaHeap {
+        private final int[] heap;
+        private final int[] pos;
+        private final double[] key;
+        private int size;
+
+        AreaHeap(int n) {
+            heap = new int[n];
+            pos = new int[n];
+            key = new double[n];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        double minKey() {
+            return key[heap[0]];
+        }
+
+        void add(int i, double k) {
+            key[i] = k;
+            heap[size] = i;
+            pos[i] = size;
+            siftUp(size++);
+        }
+
+        int poll() {
+            int res = heap[0];
+            heap[0] = heap[--size];
+            pos[heap[0]] = 0;
+            siftDown(0);
+            return res;
+        }
+
+        void update(int i, double k) {
+            double old = key[i];
+            key[i] = k;
+            if (k < old) {
+                siftUp(pos[i]);
+            } else {
+                siftDown(pos[i]);
+            }
+        }
+
+        private void siftUp(int p) {
+            int i = heap[p];
+            while (p > 0) {
+                int parent = (p - 1) >>> 1;
+                if (key[heap[parent]] <= key[i]) {
+                    break;
+                }
+                heap[p] = heap[parent];
+                pos[heap[p]] = p;
+                p = parent;
+            }
+            heap[p] = i;
+            pos[i] = p;
+        }
+
+        private void siftDown(int p) {
+            int i = heap[p];
+            while (true) {
+                int c = 2 * p + 1;
+                if (c >= size) {
+                    break;
+                }
+                if (c + 1 < size && key[heap[c + 1]] < key[heap[c]]) {
+                    c++;
+                }
+                if (key[i] <= key[heap[c]]) {
+                    break;
+                }
+                heap[p] = heap[c];
+                pos[heap[p]] = p;
+                p = c;
+            }
+            heap[p] = i;
+            pos[i] = p;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+/**
+ * Statistics of a track, accumulated while the track points are merged in
+ * file order. Each point is only looked at once and the statistics need
+ * constant memory, independent of the length of the track.
+ *
+ * Distances are summed up within track segments only. A pair of points
+ * counts as moving, if the speed measured by the receiver (or, if missing,
+ * the speed computed from the positions) is at least
+ * {@link #MIN_MOVING_SPEED} and the points are at most
+ * {@link #MAX_MOVING_INTERVAL} apart. Elevation gain and loss use a
+ * hysteresis of {@link #ELEVATION_THRESHOLD}, so that the noise of the GPS
+ * altitude does not add up.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public final class ColumbusTrackStatistics {
+    /**
+     * Min. speed in km/h of moving points.
+     */
+    public static final double MIN_MOVING_SPEED = 1.0;
+    /**
+     * Max. time in seconds between two moving points; longer intervals are
+     * considered as pause.
+     */
+    public static final long MAX_MOVING_INTERVAL = 60;
+    /**
+     * Min. change of the elevation in meters to count as gain or loss.
+     */
+    public static final int ELEVATION_THRESHOLD = 5;
+
+    /* Mean earth radius in meters */
+    private static final double EARTH_RADIUS = 6371008.8;
+    private static final double RADIANS_PER_MICRO_DEGREE = Math.PI / 180 / ColumbusCSVCoordinateParser.MICRO_DEGREES;
+
+    private int points;
+    private int segments;
+    private double distance;
+    private long movingTime;
+    private long startTime = ColumbusRecord.NO_TIME;
+    private long endTime = ColumbusRecord.NO_TIME;
+    private int maxSpeed = ColumbusRecord.NO_VALUE;
+    private double elevationGain, elevationLoss;
+    private int minElevation = Integer.MAX_VALUE, maxElevation = Integer.MIN_VALUE;
+    private int minLat = Integer.MAX_VALUE, minLon = Integer.MAX_VALUE;
+    private int maxLat = Integer.MIN_VALUE, maxLon = Integer.MIN_VALUE;
+
+    /* The previous point of the current segment */
+    private int lastLat, lastLon;
+    private long lastTime;
+    /* Elevation at the last counted change */
+    private int refElevation = ColumbusRecord.NO_VALUE;
+
+    /**
+     * Adds a track point.
+     *
+     * @param store
+     *            The records.
+     * @param i
+     *            The number of the record.
+     * @param segmentStart
+     *            true, if the point starts a new segment.
+     */
+    void add(ColumbusTrackStore store, int i, boolean segmentStart) {
+        add(store.getLatitude(i), store.getLongitude(i), store.getTime(i), store.getSpeed(i), store.getHeight(i),
+            segmentStart);
+    }
+
+    /**
+     * Adds a track point.
+     *
+     * @param lat
+     *            The latitude in micro-degrees.
+     * @param lon
+     *            The longitude in micro-degrees.
+     * @param time
+     *            The time in seconds or {@link ColumbusRecord#NO_TIME}.
+     * @param speed
+     *            The speed in km/h or {@link ColumbusRecord#NO_VALUE}.
+     * @param elevation
+     *            The elevation in meters or {@link ColumbusRecord#NO_VALUE}.
+     * @param segmentStart
+     *            true, if the point starts a new segment.
+     */
+    void add(int lat, int lon, long time, int speed, int elevation, boolean segmentStart) {
+        if (points == 0 || segmentStart) {
+            segments++;
+        } else {
+            double d = distance(lastLat, lastLon, lat, lon);
+            distance += d;
+            if (time != ColumbusRecord.NO_TIME && lastTime != ColumbusRecord.NO_TIME) {
+                long dt = time - lastTime;
+                if (dt > 0 && dt <= MAX_MOVING_INTERVAL) {
+                    double v = speed != ColumbusRecord.NO_VALUE ? speed : d / dt * 3.6;
+                    if (v >= MIN_MOVING_SPEED) {
+                        movingTime += dt;
+                    }
+                }
+            }
+        }
+        points++;
+
+        if (time != ColumbusRecord.NO_TIME) {
+            if (startTime == ColumbusRecord.NO_TIME) {
+                startTime = time;
+            }
+            endTime = time;
+        }
+        if (speed != ColumbusRecord.NO_VALUE) {
+            maxSpeed = Math.max(maxSpeed, speed);
+        }
+        if (elevation != ColumbusRecord.NO_VALUE) {
+            minElevation = Math.min(minElevation, elevation);
+            maxElevation = Math.max(maxElevation, elevation);
+            if (refElevation == ColumbusRecord.NO_VALUE) {
+                refElevation = elevation;
+            } else if (elevation - refElevation >= ELEVATION_THRESHOLD) {
+                elevationGain += elevation - refElevation;
+                refElevation = elevation;
+            } else if (refElevation - elevation >= ELEVATION_THRESHOLD) {
+                elevationLoss += refElevation - elevation;
+                refElevation = elevation;
+            }
+        }
+        minLat = Math.min(minLat, lat);
+        maxLat = Math.max(maxLat, lat);
+        minLon = Math.min(minLon, lon);
+        maxLon = Math.max(maxLon, lon);
+
+        lastLat = lat;
+        lastLon = lon;
+        lastTime = time;
+    }
+
+    /* Haversine distance in meters between two positions in micro-degrees */
+    private static double distance(int lat1, int lon1, int lat2, int lon2) {
+        double phi1 = lat1 * RADIANS_PER_MICRO_DEGREE;
+        double phi2 = lat2 * RADIANS_PER_MICRO_DEGREE;
+        double sinLat = Math.sin((phi2 - phi1) / 2);
+        double sinLon = Math.sin((lon2 - (double) lon1) * RADIANS_PER_MICRO_DEGREE / 2);
+        double a = sinLat * sinLat + Math.cos(phi1) * Math.cos(phi2) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Gets the number of track points.
+     *
+     * @return
+     */
+    public int getPointCount() {
+        return points;
+    }
+
+    /**
+     * Gets the number of track segments.
+     *
+     * @return
+     */
+    public int getSegmentCount() {
+        return segments;
+    }
+
+    /**
+     * Gets the length of the track.
+     *
+     * @return The distance in meters.
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Gets the time spent moving.
+     *
+     * @return The time in seconds.
+     */
+    public long getMovingTime() {
+        return movingTime;
+    }
+
+    /**
+     * Gets the time between the first and the last track point.
+     *
+     * @return The time in seconds or 0, if the points have no time.
+     */
+    public long getTotalTime() {
+        return startTime == ColumbusRecord.NO_TIME ? 0 : endTime - startTime;
+    }
+
+    /**
+     * Gets the time of the first track point.
+     *
+     * @return The time in seconds since the epoch or
+     *         {@link ColumbusRecord#NO_TIME}.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Gets the time of the last track point.
+     *
+     * @return The time in seconds since the epoch or
+     *         {@link ColumbusRecord#NO_TIME}.
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Gets the max. speed measured by the receiver.
+     *
+     * @return The speed in km/h or 0, if no speed has been recorded.
+     */
+    public int getMaxSpeed() {
+        return maxSpeed == ColumbusRecord.NO_VALUE ? 0 : maxSpeed;
+    }
+
+    /**
+     * Gets the average speed while moving.
+     *
+     * @return The speed in km/h.
+     */
+    public double getAverageSpeed() {
+        return movingTime == 0 ? 0 : distance / movingTime * 3.6;
+    }
+
+    /**
+     * Gets the sum of all climbs.
+     *
+     * @return The elevation gain in meters.
+     */
+    public double getElevationGain() {
+        return elevationGain;
+    }
+
+    /**
+     * Gets the sum of all descents.
+     *
+     * @return The elevation loss in meters.
+     */
+    public double getElevationLoss() {
+        return elevationLoss;
+    }
+
+    /**
+     * Gets the min. elevation.
+     *
+     * @return The elevation in meters or {@link ColumbusRecord#NO_VALUE}.
+     */
+    public int getMinElevation() {
+        return minElevation > maxElevation ? ColumbusRecord.NO_VALUE : minElevation;
+    }
+
+    /**
+     * Gets the max. elevation.
+     *
+     * @return The elevation in meters or {@link ColumbusRecord#NO_VALUE}.
+     */
+    public int getMaxElevation() {
+        return minElevation > maxElevation ? ColumbusRecord.NO_VALUE : maxElevation;
+    }
+
+    /**
+     * Checks, if the bounding box is valid, i. e. the track has any points.
+     *
+     * @return
+     */
+    public boolean hasBounds() {
+        return points > 0;
+    }
+
+    /**
+     * Gets the min. latitude of the bounding box.
+     *
+     * @return The latitude in degrees.
+     */
+    public double getMinLat() {
+        return ColumbusCSVCoordinateParser.toDegrees(minLat);
+    }
+
+    /**
+     * Gets the min. longitude of the bounding box.
+     *
+     * @return The longitude in degrees.
+     */
+    public double getMinLon() {
+        return ColumbusCSVCoordinateParser.toDegrees(minLon);
+    }
+
+    /**
+     * Gets the max. latitude of the bounding box.
+     *
+     * @return The latitude in degrees.
+     */
+    public double getMaxLat() {
+        return ColumbusCSVCoordinateParser.toDegrees(maxLat);
+    }
+
+    /**
+     * Gets the max. longitude of the bounding box.
+     *
+     * @return The longitude in degrees.
+     */
+    public double getMaxLon() {
+        return ColumbusCSVCoordinateParser.toDegrees(maxLon);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ColumbusTrackStatistics [points=%d, segments=%d, distance=%.0fm, movingTime=%ds, "
+            + "totalTime=%ds, maxSpeed=%dkm/h, avgSpeed=%.1fkm/h, gain=%.0fm, loss=%.0fm]", points, segments,
+            distance, movingTime, getTotalTime(), getMaxSpeed(), getAverageSpeed(), elevationGain, elevationLoss);
+    }
+}
@@ -0,0 +1,735 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.gpx.WayPoint;
+
+/**
+ * Stores the records of a Columbus CSV file in primitive parallel arrays
+ * instead of one JOSM {@link WayPoint} per record. A simple-mode record takes
+ * 23 bytes, an extended-mode record 36 bytes, so even logs with millions of
+ * points fit in a few dozen megabytes. Way points are created on demand by
+ * {@link #getWayPoint(int)} or the lazy list returned by
+ * {@link #asWayPoints()}.
+ *
+ * Only headless users (e.g. {@link ColumbusCSVBatchConverter}) work on the
+ * store alone. The import into JOSM parses into a store as well, but still
+ * creates a way point for every record, because the GPX layer needs them.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public class ColumbusTrackStore {
+    private static final int INITIAL_CAPACITY = 1024;
+    /* Placeholder for missing short values */
+    private static final short NO_SHORT = Short.MIN_VALUE;
+    /*
+     * Times are stored as unsigned seconds since the epoch, which covers the
+     * years 1970 to 2105 and thus all years accepted by
+     * ColumbusCSVTimeDecoder (2000 to 2099). The max. unsigned value marks
+     * missing times.
+     */
+    private static final int NO_TIME = -1;
+    /*
+     * Values of the fix column; FIX_NONE marks simple-mode records, FIX_OTHER
+     * values kept in otherFixModes
+     */
+    private static final byte FIX_NONE = 0;
+    private static final byte FIX_UNKNOWN = 1;
+    private static final byte FIX_2D = 2;
+    private static final byte FIX_3D = 3;
+    private static final byte FIX_OTHER = 4;
+
+    /**
+     * Extension of binary track files, see {@link #save(File)}.
+     */
+    public static final String BINARY_FILE_EXT = ".coltrack";
+
+    /* Buffer size for writing a store to a channel */
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+    /* Header of binary track files */
+    private static final int MAGIC = 0x43545243; // "CTRC"
+    private static final int VERSION = 3;
+
+    private int size;
+    private byte[] tag;
+    private int[] index, lat, lon, time;
+    private short[] height, speed, heading;
+    /* Columns of the extended mode; allocated with the first extended record */
+    private byte[] fix;
+    private float[] pdop, hdop, vdop;
+    /* Sparse column: record number -> name of the vox file */
+    private final Map<Integer, String> voxFiles = new HashMap<>();
+    /* Sparse column: record number -> fix mode other than 2d and 3d */
+    private final Map<Integer, String> otherFixModes = new HashMap<>();
+
+    /**
+     * Creates a new, empty store.
+     */
+    public ColumbusTrackStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    private ColumbusTrackStore(int capacity) {
+        tag = new byte[capacity];
+        index = new int[capacity];
+        lat = new int[capacity];
+        lon = new int[capacity];
+        time = new int[capacity];
+        height = new short[capacity];
+        speed = new short[capacity];
+        heading = new short[capacity];
+    }
+
+    /**
+     * Reads all records of a Columbus CSV file into a new store.
+     *
+     * @param file
+     *            The Columbus file to read.
+     * @return The store containing all records.
+     * @throws IOException
+     */
+    public static ColumbusTrackStore read(File file) throws IOException {
+        ColumbusTrackStore store = new ColumbusTrackStore();
+        ColumbusCSVRecordReader.readAll(file, store::add);
+        store.trimToSize();
+        return store;
+    }
+
+    /**
+     * Writes the store to a binary track file, which can be read with
+     * {@link #load(File)}. Unlike the cache files of
+     * {@link ColumbusCSVCache}, the file is not bound to the source file.
+     *
+     * @param file
+     *            The file to write.
+     * @throws IOException
+     */
+    public void save(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.flip();
+            while (header.hasRemaining()) {
+                ch.write(header);
+            }
+            writeTo(ch);
+        }
+    }
+
+    /**
+     * Reads a binary track file written by {@link #save(File)}.
+     *
+     * @param file
+     *            The binary track file.
+     * @return The store.
+     * @throws IOException
+     *             if the file cannot be read or has an unknown format.
+     */
+    public static ColumbusTrackStore load(File file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ch.map(MapMode.READ_ONLY, 0, ch.size());
+            if (buf.remaining() < 8 || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                throw new IOException("Unknown track file format: " + file);
+            }
+            return readFrom(buf);
+        }
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param rec
+     *            The record to append.
+     */
+    public void add(ColumbusRecord rec) {
+        if (size == lat.length) {
+            grow(size * 2);
+        }
+        int i = size++;
+        tag[i] = (byte) rec.getTag();
+        index[i] = rec.getIndex();
+        lat[i] = rec.getLatitude();
+        lon[i] = rec.getLongitude();
+        time[i] = rec.hasTime() ? (int) rec.getTime() : NO_TIME;
+        height[i] = toShort(rec.getHeight());
+        speed[i] = toShort(rec.getSpeed());
+        heading[i] = toShort(rec.getHeading());
+
+        if (rec.isExtended()) {
+            if (fix == null) {
+                fix = new byte[lat.length];
+                pdop = newFloatColumn(lat.length);
+                hdop = newFloatColumn(lat.length);
+                vdop = newFloatColumn(lat.length);
+            }
+            fix[i] = encodeFixMode(rec.getFixMode());
+            if (fix[i] == FIX_OTHER) {
+                otherFixModes.put(i, rec.getFixMode());
+            }
+            pdop[i] = rec.getPdop();
+            hdop[i] = rec.getHdop();
+            vdop[i] = rec.getVdop();
+        }
+
+        if (rec.getVoxFile() != null) {
+            voxFiles.put(i, rec.getVoxFile());
+        }
+    }
+
+    private static short toShort(int val) {
+        if (val == ColumbusRecord.NO_VALUE || val < Short.MIN_VALUE + 1 || val > Short.MAX_VALUE) {
+            return NO_SHORT;
+        }
+        return (short) val;
+    }
+
+    private static int fromShort(short val) {
+        return val == NO_SHORT ? ColumbusRecord.NO_VALUE : val;
+    }
+
+    private static float[] newFloatColumn(int capacity) {
+        float[] res = new float[capacity];
+        Arrays.fill(res, Float.NaN);
+        return res;
+    }
+
+    private static byte encodeFixMode(String fixMode) {
+        if ("2d".equals(fixMode)) {
+            return FIX_2D;
+        }
+        if ("3d".equals(fixMode)) {
+            return FIX_3D;
+        }
+        return fixMode != null ? FIX_OTHER : FIX_UNKNOWN;
+    }
+
+    private void grow(int capacity) {
+        tag = Arrays.copyOf(tag, capacity);
+        index = Arrays.copyOf(index, capacity);
+        lat = Arrays.copyOf(lat, capacity);
+        lon = Arrays.copyOf(lon, capacity);
+        time = Arrays.copyOf(time, capacity);
+        height = Arrays.copyOf(height, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        heading = Arrays.copyOf(heading, capacity);
+        if (fix != null) {
+            int old = pdop.length;
+            fix = Arrays.copyOf(fix, capacity);
+            pdop = Arrays.copyOf(pdop, capacity);
+            hdop = Arrays.copyOf(hdop, capacity);
+            vdop = Arrays.copyOf(vdop, capacity);
+            if (capacity > old) {
+                Arrays.fill(pdop, old, capacity, Float.NaN);
+                Arrays.fill(hdop, old, capacity, Float.NaN);
+                Arrays.fill(vdop, old, capacity, Float.NaN);
+            }
+        }
+    }
+
+    /**
+     * Releases unused capacity.
+     */
+    public void trimToSize() {
+        if (size < lat.length) {
+            grow(Math.max(size, 1));
+        }
+    }
+
+    /**
+     * Appends all records of another store.
+     *
+     * @param other
+     *            The store to append.
+     */
+    public void addAll(ColumbusTrackStore other) {
+        int n = other.size;
+        if (size + n > lat.length) {
+            grow(Math.max(size + n, lat.length * 2));
+        }
+        System.arraycopy(other.tag, 0, tag, size, n);
+        System.arraycopy(other.index, 0, index, size, n);
+        System.arraycopy(other.lat, 0, lat, size, n);
+        System.arraycopy(other.lon, 0, lon, size, n);
+        System.arraycopy(other.time, 0, time, size, n);
+        System.arraycopy(other.height, 0, height, size, n);
+        System.arraycopy(other.speed, 0, speed, size, n);
+        System.arraycopy(other.heading, 0, heading, size, n);
+        if (other.fix != null) {
+            if (fix == null) {
+                fix = new byte[lat.length];
+                pdop = newFloatColumn(lat.length);
+                hdop = newFloatColumn(lat.length);
+                vdop = newFloatColumn(lat.length);
+            }
+            System.arraycopy(other.fix, 0, fix, size, n);
+            System.arraycopy(other.pdop, 0, pdop, size, n);
+            System.arraycopy(other.hdop, 0, hdop, size, n);
+            System.arraycopy(other.vdop, 0, vdop, size, n);
+        }
+        for (Map.Entry<Integer, String> e : other.voxFiles.entrySet()) {
+            voxFiles.put(size + e.getKey(), e.getValue());
+        }
+        for (Map.Entry<Integer, String> e : other.otherFixModes.entrySet()) {
+            otherFixModes.put(size + e.getKey(), e.getValue());
+        }
+        size += n;
+    }
+
+    /**
+     * Writes the store in a compact binary form. The columns are written as
+     * a whole, so that {@link #readFrom(ByteBuffer)} can read them in bulk.
+     *
+     * @param ch
+     *            The channel to write to.
+     * @throws IOException
+     */
+    void writeTo(WritableByteChannel ch) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(IO_BUFFER_SIZE);
+        buf.putInt(size);
+        buf.put((byte) (fix != null ? 1 : 0));
+        writeColumn(ch, buf, tag);
+        writeColumn(ch, buf, index);
+        writeColumn(ch, buf, lat);
+        writeColumn(ch, buf, lon);
+        writeColumn(ch, buf, time);
+        writeColumn(ch, buf, height);
+        writeColumn(ch, buf, speed);
+        writeColumn(ch, buf, heading);
+        if (fix != null) {
+            writeColumn(ch, buf, fix);
+            writeColumn(ch, buf, pdop);
+            writeColumn(ch, buf, hdop);
+            writeColumn(ch, buf, vdop);
+        }
+
+        writeStrings(ch, buf, voxFiles);
+        writeStrings(ch, buf, otherFixModes);
+        flush(ch, buf);
+    }
+
+    private static void writeStrings(WritableByteChannel ch, ByteBuffer buf, Map<Integer, String> col)
+        throws IOException {
+        ensureRemaining(ch, buf, 4);
+        buf.putInt(col.size());
+        for (Map.Entry<Integer, String> e : col.entrySet()) {
+            byte[] value = e.getValue().getBytes(StandardCharsets.UTF_8);
+            ensureRemaining(ch, buf, 6 + value.length);
+            buf.putInt(e.getKey());
+            buf.putShort((short) value.length);
+            buf.put(value);
+        }
+    }
+
+    private void writeColumn(WritableByteChannel ch, ByteBuffer buf, byte[] col) throws IOException {
+        for (int off = 0; off < size;) {
+            int len = Math.min(size - off, buf.remaining());
+            buf.put(col, off, len);
+            off += len;
+            ensureRemaining(ch, buf, 1);
+        }
+    }
+
+    private void writeColumn(WritableByteChannel ch, ByteBuffer buf, short[] col) throws IOException {
+        for (int off = 0; off < size;) {
+            ensureRemaining(ch, buf, 2);
+            int len = Math.min(size - off, buf.remaining() / 2);
+            buf.asShortBuffer().put(col, off, len);
+            buf.position(buf.position() + 2 * len);
+            off += len;
+        }
+    }
+
+    private void writeColumn(WritableByteChannel ch, ByteBuffer buf, int[] col) throws IOException {
+        for (int off = 0; off < size;) {
+            ensureRemaining(ch, buf, 4);
+            int len = Math.min(size - off, buf.remaining() / 4);
+            buf.asIntBuffer().put(col, off, len);
+            buf.position(buf.position() + 4 * len);
+            off += len;
+        }
+    }
+
+    private void writeColumn(WritableByteChannel ch, ByteBuffer buf, float[] col) throws IOException {
+        for (int off = 0; off < size;) {
+            ensureRemaining(ch, buf, 4);
+            int len = Math.min(size - off, buf.remaining() / 4);
+            buf.asFloatBuffer().put(col, off, len);
+            buf.position(buf.position() + 4 * len);
+            off += len;
+        }
+    }
+
+    private static void ensureRemaining(WritableByteChannel ch, ByteBuffer buf, int bytes) throws IOException {
+        if (buf.remaining() < bytes) {
+            flush(ch, buf);
+        }
+    }
+
+    private static void flush(WritableByteChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+        buf.clear();
+    }
+
+    /**
+     * Reads a store written by {@link #writeTo(WritableByteChannel)}.
+     *
+     * @param buf
+     *            The buffer to read from, starting at its current position.
+     * @return The store.
+     * @throws IOException
+     *             if the buffer does not contain a valid store.
+     */
+    static ColumbusTrackStore readFrom(ByteBuffer buf) throws IOException {
+        try {
+            int n = buf.getInt();
+            boolean ext = buf.get() != 0;
+            if (n < 0 || (long) n * (ext ? 36 : 23) > buf.remaining()) {
+                throw new IOException("Invalid number of records: " + n);
+            }
+
+            ColumbusTrackStore store = new ColumbusTrackStore(Math.max(n, 1));
+            buf.get(store.tag, 0, n);
+            readColumn(buf, store.index, n);
+            readColumn(buf, store.lat, n);
+            readColumn(buf, store.lon, n);
+            readColumn(buf, store.time, n);
+            readColumn(buf, store.height, n);
+            readColumn(buf, store.speed, n);
+            readColumn(buf, store.heading, n);
+            if (ext) {
+                store.fix = new byte[store.lat.length];
+                store.pdop = new float[store.lat.length];
+                store.hdop = new float[store.lat.length];
+                store.vdop = new float[store.lat.length];
+                buf.get(store.fix, 0, n);
+                readColumn(buf, store.pdop, n);
+                readColumn(buf, store.hdop, n);
+                readColumn(buf, store.vdop, n);
+            }
+
+            readStrings(buf, store.voxFiles, n);
+            readStrings(buf, store.otherFixModes, n);
+            store.size = n;
+            return store;
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException("Truncated track store", e);
+        }
+    }
+
+    private static void readStrings(ByteBuffer buf, Map<Integer, String> col, int n) throws IOException {
+        int count = buf.getInt();
+        for (int i = 0; i < count; i++) {
+            int idx = buf.getInt();
+            byte[] value = new byte[buf.getShort() & 0xFFFF];
+            buf.get(value);
+            if (idx < 0 || idx >= n) {
+                throw new IOException("Invalid record number in sparse column: " + idx);
+            }
+            col.put(idx, new String(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void readColumn(ByteBuffer buf, short[] col, int n) {
+        buf.asShortBuffer().get(col, 0, n);
+        buf.position(buf.position() + 2 * n);
+    }
+
+    private static void readColumn(ByteBuffer buf, int[] col, int n) {
+        buf.asIntBuffer().get(col, 0, n);
+        buf.position(buf.position() + 4 * n);
+    }
+
+    private static void readColumn(ByteBuffer buf, float[] col, int n) {
+        buf.asFloatBuffer().get(col, 0, n);
+        buf.position(buf.position() + 4 * n);
+    }
+
+    /**
+     * Gets the number of records.
+     *
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the tag (<tt>T</tt>, <tt>C</tt> or <tt>V</tt>) of a record.
+     *
+     * @param i
+     *            The record number.
+     * @return
+     */
+    public char getTag(int i) {
+        return (char) tag[i];
+    }
+
+    /**
+     * Gets the running number (INDEX column) of a record.
+     *
+     * @param i
+     *            The record number.
+     * @return The index or {@link ColumbusRecord#NO_VALUE}.
+     */
+    public int getIndex(int i) {
+        return index[i];
+    }
+
+    /**
+     * Gets the latitude of a record in micro-degrees.
+     *
+     * @param i
+     *            The record number.
+     * @return
+     */
+    public int getLatitude(int i) {
+        return lat[i];
+    }
+
+    /**
+     * Gets the longitude of a record in micro-degrees.
+     *
+     * @param i
+     *            The record number.
+     * @return
+     */
+    public int getLongitude(int i) {
+        return lon[i];
+    }
+
+    /**
+     * Gets the time of a record in seconds since the epoch.
+     *
+     * @param i
+     *            The record number.
+     * @return The time or {@link ColumbusRecord#NO_TIME}.
+     */
+    public long getTime(int i) {
+        return time[i] == NO_TIME ? ColumbusRecord.NO_TIME : Integer.toUnsignedLong(time[i]);
+    }
+
+    /**
+     * Gets the elevation height of a record in meters.
+     *
+     * @param i
+     *            The record number.
+     * @return The height or {@link ColumbusRecord#NO_VALUE}.
+     */
+    public int getHeight(int i) {
+        return fromShort(height[i]);
+    }
+
+    /**
+     * Gets the speed of a record in km/h.
+     *
+     * @param i
+     *            The record number.
+     * @return The speed or {@link ColumbusRecord#NO_VALUE}.
+     */
+    public int getSpeed(int i) {
+        return fromShort(speed[i]);
+    }
+
+    /**
+     * Gets the heading of a record in degrees.
+     *
+     * @param i
+     *            The record number.
+     * @return The heading or {@link ColumbusRecord#NO_VALUE}.
+     */
+    public int getHeading(int i) {
+        return fromShort(heading[i]);
+    }
+
+    /**
+     * Checks, if a record contains the data of the extended mode.
+     *
+     * @param i
+     *            The record number.
+     * @return
+     */
+    public boolean isExtended(int i) {
+        return fix != null && fix[i] != FIX_NONE;
+    }
+
+    /**
+     * Gets the fix mode of a record.
+     *
+     * @param i
+     *            The record number.
+     * @return The fix mode in lower case as read (usually <tt>2d</tt> or
+     *         <tt>3d</tt>) or null.
+     */
+    public String getFixMode(int i) {
+        if (fix == null) {
+            return null;
+        }
+        switch (fix[i]) {
+        case FIX_2D:
+            return "2d";
+        case FIX_3D:
+            return "3d";
+        case FIX_OTHER:
+            return otherFixModes.get(i);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Gets the pdop of a record.
+     *
+     * @param i
+     *            The record number.
+     * @return The pdop or <code>Float.NaN</code>.
+     */
+    public float getPdop(int i) {
+        return pdop == null ? Float.NaN : pdop[i];
+    }
+
+    /**
+     * Gets the hdop of a record.
+     *
+     * @param i
+     *            The record number.
+     * @return The hdop or <code>Float.NaN</code>.
+     */
+    public float getHdop(int i) {
+        return hdop == null ? Float.NaN : hdop[i];
+    }
+
+    /**
+     * Gets the vdop of a record.
+     *
+     * @param i
+     *            The record number.
+     * @return The vdop or <code>Float.NaN</code>.
+     */
+    public float getVdop(int i) {
+        return vdop == null ? Float.NaN : vdop[i];
+    }
+
+    /**
+     * Gets the name of the vox file of a record.
+     *
+     * @param i
+     *            The record number.
+     * @return The name without extension or null.
+     */
+    public String getVoxFile(int i) {
+        return voxFiles.isEmpty() ? null : voxFiles.get(i);
+    }
+
+    /**
+     * Gets the record numbers having a vox file.
+     *
+     * @return
+     */
+    public Map<Integer, String> getVoxFiles() {
+        return voxFiles;
+    }
+
+    /**
+     * Creates a new JOSM way point for a record. The way point carries the
+     * same attributes (ele, fix, pdop, hdop, vdop, speed, heading) as the ones created by
+     * {@link ColumbusCSVReader}; audio links are not resolved.
+     *
+     * @param i
+     *            The record number.
+     * @return
+     */
+    public WayPoint getWayPoint(int i) {
+        ColumbusWayPoint wpt = new ColumbusWayPoint(new LatLon(ColumbusCSVCoordinateParser.toDegrees(lat[i]),
+            ColumbusCSVCoordinateParser.toDegrees(lon[i])), getHeight(i), getSpeed(i), getHeading(i));
+        if (time[i] != NO_TIME) {
+            wpt.setTimeInMillis(Integer.toUnsignedLong(time[i]) * 1000);
+        }
+        if (fix != null) {
+            String fixMode = getFixMode(i);
+            if (fixMode != null) {
+                wpt.attr.put(ColumbusCSVReader.FIX_TAG, fixMode);
+            }
+            wpt.setPdop(pdop[i]);
+            wpt.setHdop(hdop[i]);
+            wpt.setVdop(vdop[i]);
+        }
+        return wpt;
+    }
+
+    /**
+     * Gets a read-only list view on all records. The way points are created
+     * on each access and not kept, so only the parts actually touched are
+     * materialized.
+     *
+     * @return
+     */
+    public List<WayPoint> asWayPoints() {
+        return new WayPointView(0, size);
+    }
+
+    /**
+     * Gets a read-only list view on a range of records.
+     *
+     * @param from
+     *            The first record number (inclusive).
+     * @param to
+     *            The last record number (exclusive).
+     * @return
+     * @see #asWayPoints()
+     */
+    public List<WayPoint> asWayPoints(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Range " + from + " - " + to + " of " + size);
+        }
+        return new WayPointView(from, to);
+    }
+
+    /**
+     * Lazy list materializing the way points of a range of records.
+     */
+    private class WayPointView extends AbstractList<WayPoint> implements RandomAccess {
+        private final int from, to;
+
+        WayPointView(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public WayPoint get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index " + index + " of " + (to - from));
+            }
+            return getWayPoint(from + index);
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Index of the audio files in the directory of an import. The directory is
+ * listed once, so resolving the vox file of a record is a map lookup instead
+ * of probing the (often slow, removable) file system for several spellings.
+ *
+ * Names are matched case-insensitive, since the FAT16 file names written by
+ * the device are interpreted differently by case-sensitive file systems.
+ * Instances are immutable and can be used by several threads.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public class ColumbusVoxIndex {
+    private static final String VOX_PREFIX = "vox";
+    private static final String WAV_EXT = ".wav";
+
+    /* All .wav files by lower case name */
+    private final Map<String, File> filesByName = new HashMap<>();
+    /* All voxNNNNN.wav files by their number */
+    private final SortedMap<Integer, File> filesByNumber = new TreeMap<>();
+
+    /**
+     * Creates the index of the given directory. If the directory cannot be
+     * read, the index is empty.
+     *
+     * @param dir
+     *            The directory containing the audio files.
+     */
+    public ColumbusVoxIndex(File dir) {
+        if (dir == null) {
+            return;
+        }
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir.toPath())) {
+            for (Path p : ds) {
+                String name = p.getFileName().toString().toLowerCase(Locale.ENGLISH);
+                if (!name.endsWith(WAV_EXT)) {
+                    continue;
+                }
+                File f = p.toFile();
+                filesByName.putIfAbsent(name, f);
+                int n = getVoxNumber(name);
+                if (n >= 0) {
+                    filesByNumber.putIfAbsent(n, f);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Logging.warn("Cannot list audio files in " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets an audio file by name.
+     *
+     * @param voxFile
+     *            The name of the audio file including extension, e. g.
+     *            <tt>VOX00012.WAV</tt>.
+     * @return The file or null, if the directory contains no such file.
+     */
+    public File getFile(String voxFile) {
+        return filesByName.get(voxFile.toLowerCase(Locale.ENGLISH));
+    }
+
+    /**
+     * Gets an audio file by its number.
+     *
+     * @param number
+     *            The number of the file, e. g. 12 for <tt>VOX00012.WAV</tt>.
+     * @return The file or null, if the directory contains no such file.
+     */
+    public File getFile(int number) {
+        return filesByNumber.get(number);
+    }
+
+    /**
+     * Gets all numbered audio files (<tt>voxNNNNN.wav</tt>) in ascending
+     * order of their number.
+     *
+     * @return
+     */
+    public SortedMap<Integer, File> getNumberedFiles() {
+        return Collections.unmodifiableSortedMap(filesByNumber);
+    }
+
+    /**
+     * Gets the number of indexed audio files.
+     *
+     * @return
+     */
+    public int size() {
+        return filesByName.size();
+    }
+
+    /**
+     * Gets the number of a vox file, e. g. 12 for <tt>VOX00012.wav</tt>.
+     *
+     * @param fileName
+     *            The name of the audio file (case is ignored).
+     * @return The number or -1, if the name is not of the form
+     *         <tt>voxNNNNN.wav</tt>.
+     */
+    public static int getVoxNumber(String fileName) {
+        int end = fileName.length() - WAV_EXT.length();
+        if (end <= VOX_PREFIX.length() || !fileName.regionMatches(true, 0, VOX_PREFIX, 0, VOX_PREFIX.length())
+            || !fileName.regionMatches(true, end, WAV_EXT, 0, WAV_EXT.length())
+            || end - VOX_PREFIX.length() > 9) {
+            return -1;
+        }
+        int n = 0;
+        for (int i = VOX_PREFIX.length(); i < end; i++) {
+            char c = fileName.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+}
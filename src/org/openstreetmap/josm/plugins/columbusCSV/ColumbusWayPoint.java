@@ -0,0 +1,188 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.columbusCSV;
+
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.gpx.WayPoint;
+
+/**
+ * Way point created by the import, which keeps the numeric values of the
+ * record (elevation, speed, heading and DOPs) in primitive fields. The
+ * attributes are set as well (elevation as string, DOPs as floats, like
+ * JOSM's GPX reader does), so that JOSM and the GPX export see ordinary way
+ * points; {@link WayPointHelper} reads the fields instead of parsing the
+ * attributes. Speed and heading have no GPX 1.1 element and are only kept in
+ * the fields.
+ *
+ * The attribute values are shared between way points with equal values, so
+ * large tracks do not need an extra string or float object per point.
+ *
+ * @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
+ *
+ */
+public class ColumbusWayPoint extends WayPoint {
+    /* Elevations and DOPs are recorded as integers resp. with one decimal */
+    private static final int MIN_CACHED_ELEVATION = -1000;
+    private static final int MAX_CACHED_ELEVATION = 9999;
+    private static final int MAX_CACHED_DOP = 999;
+
+    /* Benign races: strings and floats are immutable, so a lost update only costs an allocation */
+    private static final String[] ELEVATIONS = new String[MAX_CACHED_ELEVATION - MIN_CACHED_ELEVATION + 1];
+    private static final Float[] DOPS = new Float[MAX_CACHED_DOP + 1];
+
+    private final int elevation;
+    private final int speed;
+    private final int heading;
+    private float pdop = Float.NaN;
+    private float hdop = Float.NaN;
+    private float vdop = Float.NaN;
+
+    /**
+     * Creates a new way point.
+     *
+     * @param pos
+     *            The position.
+     * @param elevation
+     *            The elevation in meters or {@link ColumbusRecord#NO_VALUE}.
+     * @param speed
+     *            The speed in km/h or {@link ColumbusRecord#NO_VALUE}.
+     * @param heading
+     *            The heading in degrees or {@link ColumbusRecord#NO_VALUE}.
+     */
+    public ColumbusWayPoint(LatLon pos, int elevation, int speed, int heading) {
+        super(pos);
+        this.elevation = elevation;
+        this.speed = speed;
+        this.heading = heading;
+        if (elevation != ColumbusRecord.NO_VALUE) {
+            attr.put(ColumbusCSVReader.ELEVATIONHEIGHT_TAG, toElevationString(elevation));
+        }
+    }
+
+    /**
+     * Checks, if the way point has an elevation.
+     *
+     * @return
+     */
+    public boolean hasElevation() {
+        return elevation != ColumbusRecord.NO_VALUE;
+    }
+
+    /**
+     * Gets the elevation.
+     *
+     * @return The elevation in meters or {@link ColumbusRecord#NO_VALUE}.
+     */
+    public int getElevation() {
+        return elevation;
+    }
+
+    /**
+     * Gets the speed measured by the GPS receiver.
+     *
+     * @return The speed in km/h or {@link ColumbusRecord#NO_VALUE}.
+     */
+    public int getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Gets the heading (course over ground) measured by the GPS receiver.
+     *
+     * @return The heading in degrees or {@link ColumbusRecord#NO_VALUE}.
+     */
+    public int getHeading() {
+        return heading;
+    }
+
+    /**
+     * Gets the pdop.
+     *
+     * @return The pdop or <code>Float.NaN</code>.
+     */
+    public float getPdop() {
+        return pdop;
+    }
+
+    /**
+     * Gets the hdop.
+     *
+     * @return The hdop or <code>Float.NaN</code>.
+     */
+    public float getHdop() {
+        return hdop;
+    }
+
+    /**
+     * Gets the vdop.
+     *
+     * @return The vdop or <code>Float.NaN</code>.
+     */
+    public float getVdop() {
+        return vdop;
+    }
+
+    /**
+     * Sets the pdop.
+     *
+     * @param pdop
+     *            The pdop; <code>Float.NaN</code> is ignored.
+     */
+    void setPdop(float pdop) {
+        this.pdop = pdop;
+        putDop(ColumbusCSVReader.PDOP_TAG, pdop);
+    }
+
+    /**
+     * Sets the hdop.
+     *
+     * @param hdop
+     *            The hdop; <code>Float.NaN</code> is ignored.
+     */
+    void setHdop(float hdop) {
+        this.hdop = hdop;
+        putDop(ColumbusCSVReader.HDOP_TAG, hdop);
+    }
+
+    /**
+     * Sets the vdop.
+     *
+     * @param vdop
+     *            The vdop; <code>Float.NaN</code> is ignored.
+     */
+    void setVdop(float vdop) {
+        this.vdop = vdop;
+        putDop(ColumbusCSVReader.VDOP_TAG, vdop);
+    }
+
+    private void putDop(String key, float dop) {
+        if (!Float.isNaN(dop)) {
+            attr.put(key, toDopFloat(dop));
+        }
+    }
+
+    private static String toElevationString(int elevation) {
+        if (elevation < MIN_CACHED_ELEVATION || elevation > MAX_CACHED_ELEVATION) {
+            return Integer.toString(elevation);
+        }
+        int i = elevation - MIN_CACHED_ELEVATION;
+        String s = ELEVATIONS[i];
+        if (s == null) {
+            s = Integer.toString(elevation);
+            ELEVATIONS[i] = s;
+        }
+        return s;
+    }
+
+    private static Float toDopFloat(float dop) {
+        int tenths = Math.round(dop * 10);
+        if (tenths < 0 || tenths > MAX_CACHED_DOP || tenths / 10f != dop) {
+            return dop;
+        }
+        Float f = DOPS[tenths];
+        if (f == null) {
+            f = dop;
+            DOPS[tenths] = f;
+        }
+        return f;
+    }
+}
@@ -8,7 +8,6 @@ import static java.lang.Math.sqrt;
 import static java.lang.Math.toDegrees;
 import static java.lang.Math.toRadians;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.openstreetmap.josm.data.coor.LatLon;
@@ -24,6 +23,14 @@ public class WayPointHelper {
      * The name of the elevation height of a way point.
      */
     public static final String HEIGHT_ATTRIBUTE = "ele";
+    /**
+     * The name of the speed (GPX 1.0, m/s) of a way point.
+     */
+    public static final String SPEED_ATTRIBUTE = "speed";
+    /**
+     * The name of the course (GPX 1.0, degrees) of a way point.
+     */
+    public static final String COURSE_ATTRIBUTE = "course";
 
     private static final double R = 6378135;
     
@@ -32,7 +39,8 @@ public class WayPointHelper {
     }
 
     /**
-     * Gets the elevation (Z coordinate) of a JOSM way point.
+     * Gets the elevation (Z coordinate) of a JOSM way point. Way points
+     * created by the import return their stored value without parsing.
      * 
      * @param wpt
      *            The way point instance.
@@ -40,14 +48,20 @@ public class WayPointHelper {
      *         not height attribute.
      */
     public static double getElevation(WayPoint wpt) {
+        if (wpt instanceof ColumbusWayPoint) {
+            ColumbusWayPoint cwpt = (ColumbusWayPoint) wpt;
+            return cwpt.hasElevation() ? cwpt.getElevation() : 0;
+        }
         if (wpt != null) {
-            if (!wpt.attr.containsKey(HEIGHT_ATTRIBUTE)) {
+            Object height = wpt.attr.get(HEIGHT_ATTRIBUTE);
+            if (height instanceof Number) {
+                return ((Number) height).doubleValue();
+            }
+            if (height == null) {
                 return 0;
             }
-
-            String height = wpt.getString(WayPointHelper.HEIGHT_ATTRIBUTE);
             try {
-                return Double.parseDouble(height);
+                return Double.parseDouble(height.toString());
             } catch (NumberFormatException e) {
                 Logging.error(String.format(
                         "Cannot parse double from '%s': %s", height, e
@@ -57,6 +71,108 @@ public class WayPointHelper {
         return 0;
     }
     
+    /**
+     * Checks, if a way point has an elevation.
+     * 
+     * @param wpt
+     *            The way point instance.
+     * @return
+     */
+    public static boolean hasElevation(WayPoint wpt) {
+        if (wpt instanceof ColumbusWayPoint) {
+            return ((ColumbusWayPoint) wpt).hasElevation();
+        }
+        return wpt != null && wpt.attr.containsKey(HEIGHT_ATTRIBUTE);
+    }
+    
+    /**
+     * Gets the pdop of a way point.
+     * 
+     * @param wpt
+     *            The way point instance.
+     * @return The pdop or <code>Float.NaN</code>, if not present.
+     */
+    public static float getPdop(WayPoint wpt) {
+        if (wpt instanceof ColumbusWayPoint) {
+            return ((ColumbusWayPoint) wpt).getPdop();
+        }
+        return getFloat(wpt, ColumbusCSVReader.PDOP_TAG);
+    }
+    
+    /**
+     * Gets the hdop of a way point.
+     * 
+     * @param wpt
+     *            The way point instance.
+     * @return The hdop or <code>Float.NaN</code>, if not present.
+     */
+    public static float getHdop(WayPoint wpt) {
+        if (wpt instanceof ColumbusWayPoint) {
+            return ((ColumbusWayPoint) wpt).getHdop();
+        }
+        return getFloat(wpt, ColumbusCSVReader.HDOP_TAG);
+    }
+    
+    /**
+     * Gets the vdop of a way point.
+     * 
+     * @param wpt
+     *            The way point instance.
+     * @return The vdop or <code>Float.NaN</code>, if not present.
+     */
+    public static float getVdop(WayPoint wpt) {
+        if (wpt instanceof ColumbusWayPoint) {
+            return ((ColumbusWayPoint) wpt).getVdop();
+        }
+        return getFloat(wpt, ColumbusCSVReader.VDOP_TAG);
+    }
+    
+    /**
+     * Gets the speed of a way point measured by the GPS receiver. For way
+     * points not created by the import, the GPX 1.0 <tt>speed</tt> attribute
+     * (m/s) is used.
+     * 
+     * @param wpt
+     *            The way point instance.
+     * @return The speed in km/h or <code>Double.NaN</code>, if not present.
+     */
+    public static double getSpeed(WayPoint wpt) {
+        if (wpt instanceof ColumbusWayPoint) {
+            int speed = ((ColumbusWayPoint) wpt).getSpeed();
+            return speed != ColumbusRecord.NO_VALUE ? speed : Double.NaN;
+        }
+        return getFloat(wpt, SPEED_ATTRIBUTE) * 3.6;
+    }
+    
+    /**
+     * Gets the heading (course over ground) of a way point. For way points
+     * not created by the import, the GPX 1.0 <tt>course</tt> attribute is
+     * used.
+     * 
+     * @param wpt
+     *            The way point instance.
+     * @return The heading in degrees or <code>Double.NaN</code>, if not present.
+     */
+    public static double getHeading(WayPoint wpt) {
+        if (wpt instanceof ColumbusWayPoint) {
+            int heading = ((ColumbusWayPoint) wpt).getHeading();
+            return heading != ColumbusRecord.NO_VALUE ? heading : Double.NaN;
+        }
+        return getFloat(wpt, COURSE_ATTRIBUTE);
+    }
+    
+    /* Reads a numeric attribute of way points not created by the import */
+    private static float getFloat(WayPoint wpt, String key) {
+        if (wpt == null) {
+            return Float.NaN;
+        }
+        Object value = wpt.attr.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).floatValue();
+        }
+        return value == null ? Float.NaN : ColumbusCSVUtils.floatFromString(value.toString());
+    }
+    
     public static double getLonDist(WayPoint w1, WayPoint w2) {
         LatLon ll = new LatLon(w1.lat(), w2.lon());
         return w1.greatCircleDistance(ll);
@@ -93,7 +209,9 @@ public class WayPointHelper {
     }
 
     /**
-     * Reduces a given list of way points to the specified target size.
+     * Reduces a given list of way points to the specified target size. Unlike
+     * taking every n-th point, the points are chosen by the Visvalingam-Whyatt
+     * algorithm, so corners of the track are kept.
      * 
      * @param origList
      *            The original list containing the way points.
@@ -102,6 +220,7 @@ public class WayPointHelper {
      *            contain fewer items, so targetSize should be considered as
      *            maximum.
      * @return A list containing the reduced list.
+     * @see ColumbusTrackSimplifier
      */
     public static List<WayPoint> downsampleWayPoints(List<WayPoint> origList,
             int targetSize) {
@@ -116,13 +235,10 @@ public class WayPointHelper {
             return origList;
         }
 
-        int delta = (int) Math.max(Math.ceil(origSize / targetSize), 2);
-
-        List<WayPoint> res = new ArrayList<>(targetSize);
-        for (int i = 0; i < origSize; i += delta) {
-            res.add(origList.get(i));
+        if (targetSize == 1) {
+            return origList.subList(0, 1);
         }
-
-        return res;
+        return ColumbusTrackSimplifier.simplify(origList,
+                ColumbusTrackSimplifier.Method.VISVALINGAM_WHYATT, 0, targetSize);
     }
 }